@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The original quick_sort.quickSort (last element as pivot). Only inputs that do
+ * not drive it quadratic are measured; see quick_sort_benchmark for the others.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class classic_quick_sort_benchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"random"})
+    public String distribution;
+
+    private int[] keys;
+    private long[] labels;
+    Object store;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        keys = datasets.keys(size, distribution);
+        labels = datasets.labels(size);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        store = kernels.newStore(keys.clone(), labels.clone());
+    }
+
+    @Benchmark
+    public Object quickSort() {
+        kernels.quickSort(store, size);
+        return store;
+    }
+}
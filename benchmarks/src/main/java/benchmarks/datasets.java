@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic in-memory inputs for the benchmarks, shaped like the rows
+ * dataset_generator writes: positive 31-bit keys with 5-letter labels.
+ */
+final class datasets {
+    static final long SEED = 2510L;
+    private static final int FEW_UNIQUE_KEYS = 16;
+    private static final int APPENDED_PERCENT = 1;
+
+    private datasets() {
+    }
+
+    static int[] keys(int size, String distribution) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        int[] keys = new int[size];
+        switch (distribution) {
+            case "random":
+                for (int i = 0; i < size; i++) keys[i] = 1 + random.nextInt(Integer.MAX_VALUE);
+                break;
+            case "sorted":
+                for (int i = 0; i < size; i++) keys[i] = 1 + (int) ((long) i * (Integer.MAX_VALUE - 1) / size);
+                break;
+            case "reversed":
+                for (int i = 0; i < size; i++) keys[i] = 1 + (int) ((long) (size - 1 - i) * (Integer.MAX_VALUE - 1) / size);
+                break;
+            case "appended":
+                // Sorted rows followed by a small unsorted batch, as after appending new data
+                int sortedRows = size - size * APPENDED_PERCENT / 100;
+                for (int i = 0; i < sortedRows; i++) keys[i] = 1 + (int) ((long) i * (Integer.MAX_VALUE - 1) / size);
+                for (int i = sortedRows; i < size; i++) keys[i] = 1 + random.nextInt(Integer.MAX_VALUE);
+                break;
+            case "few_unique":
+                for (int i = 0; i < size; i++) keys[i] = 1 + random.nextInt(FEW_UNIQUE_KEYS);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+        return keys;
+    }
+
+    static long[] labels(int size) {
+        SplittableRandom random = new SplittableRandom(SEED + 1);
+        long[] labels = new long[size];
+        char[] text = new char[5];
+        for (int i = 0; i < size; i++) {
+            for (int c = 0; c < text.length; c++) {
+                text[c] = (char) ('a' + random.nextInt(26));
+            }
+            labels[i] = kernels.packLabel(new String(text));
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,192 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Bridge to the kernels in ../java. Those programs live in the default package,
+ * which named packages (and therefore JMH) cannot import, so each kernel is bound
+ * once to a constant MethodHandle that the JIT inlines like a direct call.
+ */
+final class kernels {
+    private static final Class<?> STORE = load("record_store");
+    private static final Class<?> PIVOT = load("intro_quick_sort$Pivot");
+    private static final Class<?> LAYOUT = load("search_layouts$Layout");
+
+    private static final MethodHandle NEW_STORE = constructor(STORE, int[].class, long[].class, int.class);
+    private static final MethodHandle PACK_LABEL = method(STORE, "packLabel", long.class, CharSequence.class);
+    private static final MethodHandle PIVOT_FROM_OPTION = method(PIVOT, "fromOption", PIVOT, String.class);
+    private static final MethodHandle QUICK_SORT = method(load("quick_sort"), "quickSort", void.class, STORE, int.class, int.class);
+    private static final MethodHandle INTRO_SORT = method(load("intro_quick_sort"), "sort", void.class, STORE, PIVOT, int.class);
+    private static final MethodHandle PARALLEL_QUICK_SORT = method(load("parallel_quick_sort"), "sort", void.class, STORE, int.class, PIVOT, int.class);
+    private static final MethodHandle MERGE_SORT = method(load("merge_sort"), "mergeSort", void.class, STORE, int.class, int.class);
+    private static final MethodHandle ADAPTIVE_MERGE_SORT = method(load("adaptive_merge_sort"), "sort", void.class, STORE);
+    private static final MethodHandle PARALLEL_MERGE_SORT = method(load("parallel_merge_sort"), "sort", void.class, STORE, int.class, int.class);
+    private static final MethodHandle RADIX_SORT = method(load("radix_sort"), "sort", void.class, STORE, int.class);
+    private static final MethodHandle CREATE_LAYOUT = method(load("search_layouts"), "create", LAYOUT, String.class, int[].class);
+    private static final MethodHandle LAYOUT_SEARCH = virtual(LAYOUT, "search", int.class, int.class);
+
+    static final int INTRO_CUTOFF = 16;
+    static final int MERGE_CUTOFF = 8192;
+
+    private kernels() {
+    }
+
+    static Object newStore(int[] keys, long[] labels) {
+        try {
+            return (Object) NEW_STORE.invokeExact(keys, labels, keys.length);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static long packLabel(String label) {
+        try {
+            return (long) PACK_LABEL.invokeExact((CharSequence) label);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object pivot(String option) {
+        try {
+            return (Object) PIVOT_FROM_OPTION.invokeExact(option);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void quickSort(Object store, int n) {
+        try {
+            QUICK_SORT.invokeExact(store, 0, n - 1);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void introSort(Object store, Object pivot) {
+        try {
+            INTRO_SORT.invokeExact(store, pivot, INTRO_CUTOFF);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void parallelQuickSort(Object store, int parallelism, Object pivot) {
+        try {
+            PARALLEL_QUICK_SORT.invokeExact(store, parallelism, pivot, INTRO_CUTOFF);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void mergeSort(Object store, int n) {
+        try {
+            MERGE_SORT.invokeExact(store, 0, n - 1);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void adaptiveMergeSort(Object store) {
+        try {
+            ADAPTIVE_MERGE_SORT.invokeExact(store);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void parallelMergeSort(Object store, int parallelism) {
+        try {
+            PARALLEL_MERGE_SORT.invokeExact(store, parallelism, MERGE_CUTOFF);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static void radixSort(Object store, int parallelism) {
+        try {
+            RADIX_SORT.invokeExact(store, parallelism);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static Object searchLayout(String name, int[] sorted) {
+        try {
+            return (Object) CREATE_LAYOUT.invokeExact(name, sorted);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static int search(Object layout, int target) {
+        try {
+            return (int) LAYOUT_SEARCH.invokeExact(layout, target);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Kernel class not on the class path: " + name, e);
+        }
+    }
+
+    // Looks up a (possibly private) static method and erases kernel types to Object
+    private static MethodHandle method(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle handle = lookup.findStatic(owner, name, MethodType.methodType(returnType, parameters));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Kernel method not found: " + owner.getName() + "." + name, e);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle handle = lookup.findVirtual(owner, name, MethodType.methodType(returnType, parameters));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Kernel method not found: " + owner.getName() + "." + name, e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle handle = lookup.findConstructor(owner, MethodType.methodType(void.class, parameters));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Kernel constructor not found: " + owner.getName(), e);
+        }
+    }
+
+    private static MethodType erase(MethodType type) {
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isKernelType(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isKernelType(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return type;
+    }
+
+    private static boolean isKernelType(Class<?> type) {
+        return type == STORE || type == PIVOT || type == LAYOUT;
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Quick sort variants by pivot strategy. The classic last-element quickSort is
+ * measured separately in classic_quick_sort_benchmark because it recurses n deep
+ * on sorted and reversed input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class quick_sort_benchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"random", "sorted", "reversed", "few_unique"})
+    public String distribution;
+
+    @Param({"last", "median3", "ninther", "random"})
+    public String pivot;
+
+    private int[] keys;
+    private long[] labels;
+    private int parallelism;
+    private Object strategy;
+    Object store;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        keys = datasets.keys(size, distribution);
+        labels = datasets.labels(size);
+        parallelism = Runtime.getRuntime().availableProcessors();
+        strategy = kernels.pivot(pivot);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        store = kernels.newStore(keys.clone(), labels.clone());
+    }
+
+    @Benchmark
+    public Object introSort() {
+        kernels.introSort(store, strategy);
+        return store;
+    }
+
+    @Benchmark
+    public Object parallelQuickSort() {
+        kernels.parallelQuickSort(store, parallelism, strategy);
+        return store;
+    }
+}
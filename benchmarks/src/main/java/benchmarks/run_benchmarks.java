@@ -0,0 +1,70 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks (any standard JMH options may be passed, e.g. a benchmark
+ * regex or -p size=100000) and saves the results to ../outputs as the full JMH
+ * JSON plus a flat CSV with the mean, the 99.9% error and the confidence interval.
+ */
+public class run_benchmarks {
+    public static void main(String[] args) throws RunnerException, IOException {
+        CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Invalid JMH option: " + e.getMessage());
+            return;
+        }
+
+        File outputDir = new File("../outputs");
+        outputDir.mkdirs();
+        File json = new File(outputDir, "jmh_results.json");
+        File csv = new File(outputDir, "jmh_results.csv");
+
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(ResultFormatType.JSON)
+                .result(json.getPath())
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        writeCsv(results, csv);
+        System.out.println("Results saved to: " + json.getPath() + " and " + csv.getPath());
+    }
+
+    private static void writeCsv(Collection<RunResult> results, File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file)) {
+            writer.println("benchmark,params,mode,samples,score,error,ci_low,ci_high,unit");
+            for (RunResult run : results) {
+                BenchmarkParams params = run.getParams();
+                Result<?> primary = run.getPrimaryResult();
+                double[] interval = primary.getScoreConfidence();
+
+                StringBuilder joined = new StringBuilder();
+                for (String key : params.getParamsKeys()) {
+                    if (joined.length() > 0) joined.append(';');
+                    joined.append(key).append('=').append(params.getParam(key));
+                }
+
+                writer.printf("%s,%s,%s,%d,%.6f,%.6f,%.6f,%.6f,%s%n",
+                        params.getBenchmark(), joined, params.getMode().shortLabel(),
+                        primary.getSampleCount(), primary.getScore(), primary.getScoreError(),
+                        interval[0], interval[1], primary.getScoreUnit());
+            }
+        }
+    }
+}
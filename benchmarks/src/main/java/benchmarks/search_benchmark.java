@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lookups in a sorted key array through each search_layouts index, reported per
+ * lookup. Targets are drawn up front so the random number generator stays out of
+ * the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class search_benchmark {
+    private static final int LOOKUPS = 1024;
+
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"classic", "branchless", "eytzinger", "btree"})
+    public String layout;
+
+    private int[] keys;
+    private Object index;
+    private int[] hits;
+    private int[] misses;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        keys = datasets.keys(size, "sorted");
+        index = kernels.searchLayout(layout, keys);
+        SplittableRandom random = new SplittableRandom(datasets.SEED);
+        hits = new int[LOOKUPS];
+        misses = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hits[i] = keys[random.nextInt(size)];
+            misses[i] = keys[random.nextInt(size)] + 1; // sorted keys are spaced more than 1 apart
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void searchHit(Blackhole bh) {
+        for (int target : hits) {
+            bh.consume(kernels.search(index, target));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void searchMiss(Blackhole bh) {
+        for (int target : misses) {
+            bh.consume(kernels.search(index, target));
+        }
+    }
+}
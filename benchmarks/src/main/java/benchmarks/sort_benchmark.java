@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Full sorts of one record_store per invocation. The input copy is made in an
+ * invocation-level setup, which JMH keeps out of the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class sort_benchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"random", "sorted", "reversed", "few_unique", "appended"})
+    public String distribution;
+
+    private int[] keys;
+    private long[] labels;
+    private int parallelism;
+    Object store;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        keys = datasets.keys(size, distribution);
+        labels = datasets.labels(size);
+        parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        store = kernels.newStore(keys.clone(), labels.clone());
+    }
+
+    @Benchmark
+    public Object mergeSort() {
+        kernels.mergeSort(store, size);
+        return store;
+    }
+
+    @Benchmark
+    public Object adaptiveMergeSort() {
+        kernels.adaptiveMergeSort(store);
+        return store;
+    }
+
+    @Benchmark
+    public Object parallelMergeSort() {
+        kernels.parallelMergeSort(store, parallelism);
+        return store;
+    }
+
+    @Benchmark
+    public Object radixSort() {
+        kernels.radixSort(store, 1);
+        return store;
+    }
+
+    @Benchmark
+    public Object parallelRadixSort() {
+        kernels.radixSort(store, parallelism);
+        return store;
+    }
+}
@@ -0,0 +1,434 @@
+/**
+ * Run-adaptive merge sort for merge_sort --adaptive, after TimSort. The input is
+ * scanned for natural runs (strictly descending runs are reversed in place), runs
+ * shorter than a minimum length are extended with binary insertion sort, and runs
+ * are merged off a stack that keeps merge sizes balanced. Merges copy only the
+ * smaller run into one buffer allocated for the whole sort and switch to galloping
+ * (exponential search) while one run keeps winning. Presorted or appended input
+ * costs close to linear time. Like merge_sort, equal keys keep their input order.
+ */
+public class adaptive_merge_sort {
+    private static final int MIN_MERGE = 32;
+    private static final int MIN_GALLOP = 7;
+
+    private final int[] keys;
+    private final long[] labels;
+    private final int[] tmpKeys;   // large enough for the smaller run of any merge
+    private final long[] tmpLabels;
+    private int minGallop = MIN_GALLOP;
+
+    // Pending runs, oldest first
+    private final int[] runBase;
+    private final int[] runLen;
+    private int stackSize;
+
+    private adaptive_merge_sort(int[] keys, long[] labels, int n) {
+        this.keys = keys;
+        this.labels = labels;
+        tmpKeys = new int[n >>> 1];
+        tmpLabels = new long[n >>> 1];
+        int stackLen = n < 120 ? 5 : n < 1542 ? 10 : n < 119151 ? 24 : 49;
+        runBase = new int[stackLen];
+        runLen = new int[stackLen];
+    }
+
+    static void sort(record_store store) {
+        sort(store.keys, store.labels, 0, store.size());
+    }
+
+    // Sorts rows [lo, hi)
+    static void sort(int[] keys, long[] labels, int lo, int hi) {
+        int remaining = hi - lo;
+        if (remaining < 2) return;
+
+        if (remaining < MIN_MERGE) {
+            int initRunLen = countRunAndMakeAscending(keys, labels, lo, hi);
+            binarySort(keys, labels, lo, hi, lo + initRunLen);
+            return;
+        }
+
+        adaptive_merge_sort sorter = new adaptive_merge_sort(keys, labels, remaining);
+        int minRun = minRunLength(remaining);
+        do {
+            int len = countRunAndMakeAscending(keys, labels, lo, hi);
+            if (len < minRun) {
+                int force = Math.min(remaining, minRun);
+                binarySort(keys, labels, lo, lo + force, lo + len);
+                len = force;
+            }
+            sorter.pushRun(lo, len);
+            sorter.mergeCollapse();
+            lo += len;
+            remaining -= len;
+        } while (remaining != 0);
+        sorter.mergeForceCollapse();
+    }
+
+    // Insertion sort of [lo, hi) where [lo, start) is already sorted; equal keys go after
+    private static void binarySort(int[] keys, long[] labels, int lo, int hi, int start) {
+        if (start == lo) start++;
+        for (; start < hi; start++) {
+            int key = keys[start];
+            long label = labels[start];
+            int left = lo, right = start;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (key < keys[mid]) right = mid;
+                else left = mid + 1;
+            }
+            int n = start - left;
+            System.arraycopy(keys, left, keys, left + 1, n);
+            System.arraycopy(labels, left, labels, left + 1, n);
+            keys[left] = key;
+            labels[left] = label;
+        }
+    }
+
+    // Length of the run starting at lo; a strictly descending run is reversed first
+    private static int countRunAndMakeAscending(int[] keys, long[] labels, int lo, int hi) {
+        int runHi = lo + 1;
+        if (runHi == hi) return 1;
+
+        if (keys[runHi++] < keys[lo]) {
+            while (runHi < hi && keys[runHi] < keys[runHi - 1]) runHi++;
+            reverseRange(keys, labels, lo, runHi);
+        } else {
+            while (runHi < hi && keys[runHi] >= keys[runHi - 1]) runHi++;
+        }
+        return runHi - lo;
+    }
+
+    private static void reverseRange(int[] keys, long[] labels, int lo, int hi) {
+        hi--;
+        while (lo < hi) {
+            int key = keys[lo];
+            keys[lo] = keys[hi];
+            keys[hi] = key;
+            long label = labels[lo];
+            labels[lo++] = labels[hi];
+            labels[hi--] = label;
+        }
+    }
+
+    // Minimum run length: n / minRun is a power of two or slightly less
+    private static int minRunLength(int n) {
+        int r = 0;
+        while (n >= MIN_MERGE) {
+            r |= (n & 1);
+            n >>= 1;
+        }
+        return n + r;
+    }
+
+    private void pushRun(int base, int len) {
+        runBase[stackSize] = base;
+        runLen[stackSize] = len;
+        stackSize++;
+    }
+
+    // Merges until every run is longer than the next two combined and than the next one
+    private void mergeCollapse() {
+        while (stackSize > 1) {
+            int n = stackSize - 2;
+            if (n > 0 && runLen[n - 1] <= runLen[n] + runLen[n + 1]
+                    || n > 1 && runLen[n - 2] <= runLen[n] + runLen[n - 1]) {
+                if (runLen[n - 1] < runLen[n + 1]) n--;
+            } else if (runLen[n] > runLen[n + 1]) {
+                break;
+            }
+            mergeAt(n);
+        }
+    }
+
+    private void mergeForceCollapse() {
+        while (stackSize > 1) {
+            int n = stackSize - 2;
+            if (n > 0 && runLen[n - 1] < runLen[n + 1]) n--;
+            mergeAt(n);
+        }
+    }
+
+    // Merges runs i and i + 1 of the stack
+    private void mergeAt(int i) {
+        int base1 = runBase[i], len1 = runLen[i];
+        int base2 = runBase[i + 1], len2 = runLen[i + 1];
+
+        runLen[i] = len1 + len2;
+        if (i == stackSize - 3) {
+            runBase[i + 1] = runBase[i + 2];
+            runLen[i + 1] = runLen[i + 2];
+        }
+        stackSize--;
+
+        // Rows of run 1 below run 2's first key, and of run 2 above run 1's last, are already in place
+        int k = gallopRight(keys[base2], keys, base1, len1, 0);
+        base1 += k;
+        len1 -= k;
+        if (len1 == 0) return;
+
+        len2 = gallopLeft(keys[base1 + len1 - 1], keys, base2, len2, len2 - 1);
+        if (len2 == 0) return;
+
+        if (len1 <= len2) {
+            mergeLo(base1, len1, base2, len2);
+        } else {
+            mergeHi(base1, len1, base2, len2);
+        }
+    }
+
+    // Index in a[base, base + len) of the first element >= key, searched outward from hint
+    private static int gallopLeft(int key, int[] a, int base, int len, int hint) {
+        int lastOfs = 0, ofs = 1;
+        if (key > a[base + hint]) {
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && key > a[base + hint + ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        } else {
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && key <= a[base + hint - ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            int tmp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - tmp;
+        }
+
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (key > a[base + m]) lastOfs = m + 1;
+            else ofs = m;
+        }
+        return ofs;
+    }
+
+    // Index in a[base, base + len) of the first element > key, searched outward from hint
+    private static int gallopRight(int key, int[] a, int base, int len, int hint) {
+        int lastOfs = 0, ofs = 1;
+        if (key < a[base + hint]) {
+            int maxOfs = hint + 1;
+            while (ofs < maxOfs && key < a[base + hint - ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            int tmp = lastOfs;
+            lastOfs = hint - ofs;
+            ofs = hint - tmp;
+        } else {
+            int maxOfs = len - hint;
+            while (ofs < maxOfs && key >= a[base + hint + ofs]) {
+                lastOfs = ofs;
+                ofs = (ofs << 1) + 1;
+                if (ofs <= 0) ofs = maxOfs;
+            }
+            if (ofs > maxOfs) ofs = maxOfs;
+            lastOfs += hint;
+            ofs += hint;
+        }
+
+        lastOfs++;
+        while (lastOfs < ofs) {
+            int m = lastOfs + ((ofs - lastOfs) >>> 1);
+            if (key < a[base + m]) ofs = m;
+            else lastOfs = m + 1;
+        }
+        return ofs;
+    }
+
+    // Merges left to right with run 1 (the shorter one) copied to the buffer
+    private void mergeLo(int base1, int len1, int base2, int len2) {
+        int[] a = keys;
+        long[] la = labels;
+        int[] tmp = tmpKeys;
+        long[] ltmp = tmpLabels;
+        System.arraycopy(a, base1, tmp, 0, len1);
+        System.arraycopy(la, base1, ltmp, 0, len1);
+
+        int cursor1 = 0, cursor2 = base2, dest = base1;
+        a[dest] = a[cursor2];
+        la[dest++] = la[cursor2++];
+        if (--len2 == 0) {
+            System.arraycopy(tmp, cursor1, a, dest, len1);
+            System.arraycopy(ltmp, cursor1, la, dest, len1);
+            return;
+        }
+        if (len1 == 1) {
+            System.arraycopy(a, cursor2, a, dest, len2);
+            System.arraycopy(la, cursor2, la, dest, len2);
+            a[dest + len2] = tmp[cursor1];
+            la[dest + len2] = ltmp[cursor1];
+            return;
+        }
+
+        int minGallop = this.minGallop;
+        outer:
+        while (true) {
+            int count1 = 0, count2 = 0; // consecutive wins of each run
+
+            // One row at a time until a run starts winning consistently
+            do {
+                if (a[cursor2] < tmp[cursor1]) {
+                    a[dest] = a[cursor2];
+                    la[dest++] = la[cursor2++];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 0) break outer;
+                } else {
+                    a[dest] = tmp[cursor1];
+                    la[dest++] = ltmp[cursor1++];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 1) break outer;
+                }
+            } while ((count1 | count2) < minGallop);
+
+            // Galloping: copy whole stretches found by exponential search
+            do {
+                count1 = gallopRight(a[cursor2], tmp, cursor1, len1, 0);
+                if (count1 != 0) {
+                    System.arraycopy(tmp, cursor1, a, dest, count1);
+                    System.arraycopy(ltmp, cursor1, la, dest, count1);
+                    dest += count1;
+                    cursor1 += count1;
+                    len1 -= count1;
+                    if (len1 <= 1) break outer;
+                }
+                a[dest] = a[cursor2];
+                la[dest++] = la[cursor2++];
+                if (--len2 == 0) break outer;
+
+                count2 = gallopLeft(tmp[cursor1], a, cursor2, len2, 0);
+                if (count2 != 0) {
+                    System.arraycopy(a, cursor2, a, dest, count2);
+                    System.arraycopy(la, cursor2, la, dest, count2);
+                    dest += count2;
+                    cursor2 += count2;
+                    len2 -= count2;
+                    if (len2 == 0) break outer;
+                }
+                a[dest] = tmp[cursor1];
+                la[dest++] = ltmp[cursor1++];
+                if (--len1 == 1) break outer;
+                minGallop--;
+            } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+            if (minGallop < 0) minGallop = 0;
+            minGallop += 2; // penalty for leaving gallop mode
+        }
+        this.minGallop = minGallop < 1 ? 1 : minGallop;
+
+        if (len1 == 1) {
+            System.arraycopy(a, cursor2, a, dest, len2);
+            System.arraycopy(la, cursor2, la, dest, len2);
+            a[dest + len2] = tmp[cursor1];
+            la[dest + len2] = ltmp[cursor1];
+        } else {
+            System.arraycopy(tmp, cursor1, a, dest, len1);
+            System.arraycopy(ltmp, cursor1, la, dest, len1);
+        }
+    }
+
+    // Merges right to left with run 2 (the shorter one) copied to the buffer
+    private void mergeHi(int base1, int len1, int base2, int len2) {
+        int[] a = keys;
+        long[] la = labels;
+        int[] tmp = tmpKeys;
+        long[] ltmp = tmpLabels;
+        System.arraycopy(a, base2, tmp, 0, len2);
+        System.arraycopy(la, base2, ltmp, 0, len2);
+
+        int cursor1 = base1 + len1 - 1, cursor2 = len2 - 1, dest = base2 + len2 - 1;
+        a[dest] = a[cursor1];
+        la[dest--] = la[cursor1--];
+        if (--len1 == 0) {
+            System.arraycopy(tmp, 0, a, dest - (len2 - 1), len2);
+            System.arraycopy(ltmp, 0, la, dest - (len2 - 1), len2);
+            return;
+        }
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+            System.arraycopy(la, cursor1 + 1, la, dest + 1, len1);
+            a[dest] = tmp[cursor2];
+            la[dest] = ltmp[cursor2];
+            return;
+        }
+
+        int minGallop = this.minGallop;
+        outer:
+        while (true) {
+            int count1 = 0, count2 = 0;
+
+            do {
+                if (tmp[cursor2] < a[cursor1]) {
+                    a[dest] = a[cursor1];
+                    la[dest--] = la[cursor1--];
+                    count1++;
+                    count2 = 0;
+                    if (--len1 == 0) break outer;
+                } else {
+                    a[dest] = tmp[cursor2];
+                    la[dest--] = ltmp[cursor2--];
+                    count2++;
+                    count1 = 0;
+                    if (--len2 == 1) break outer;
+                }
+            } while ((count1 | count2) < minGallop);
+
+            do {
+                count1 = len1 - gallopRight(tmp[cursor2], a, base1, len1, len1 - 1);
+                if (count1 != 0) {
+                    dest -= count1;
+                    cursor1 -= count1;
+                    len1 -= count1;
+                    System.arraycopy(a, cursor1 + 1, a, dest + 1, count1);
+                    System.arraycopy(la, cursor1 + 1, la, dest + 1, count1);
+                    if (len1 == 0) break outer;
+                }
+                a[dest] = tmp[cursor2];
+                la[dest--] = ltmp[cursor2--];
+                if (--len2 == 1) break outer;
+
+                count2 = len2 - gallopLeft(a[cursor1], tmp, 0, len2, len2 - 1);
+                if (count2 != 0) {
+                    dest -= count2;
+                    cursor2 -= count2;
+                    len2 -= count2;
+                    System.arraycopy(tmp, cursor2 + 1, a, dest + 1, count2);
+                    System.arraycopy(ltmp, cursor2 + 1, la, dest + 1, count2);
+                    if (len2 <= 1) break outer;
+                }
+                a[dest] = a[cursor1];
+                la[dest--] = la[cursor1--];
+                if (--len1 == 0) break outer;
+                minGallop--;
+            } while (count1 >= MIN_GALLOP | count2 >= MIN_GALLOP);
+            if (minGallop < 0) minGallop = 0;
+            minGallop += 2;
+        }
+        this.minGallop = minGallop < 1 ? 1 : minGallop;
+
+        if (len2 == 1) {
+            dest -= len1;
+            cursor1 -= len1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, len1);
+            System.arraycopy(la, cursor1 + 1, la, dest + 1, len1);
+            a[dest] = tmp[cursor2];
+            la[dest] = ltmp[cursor2];
+        } else {
+            System.arraycopy(tmp, 0, a, dest - (len2 - 1), len2);
+            System.arraycopy(ltmp, 0, la, dest - (len2 - 1), len2);
+        }
+    }
+}
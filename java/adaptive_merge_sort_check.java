@@ -0,0 +1,36 @@
+/**
+ * Checks that merge_sort --adaptive writes exactly what merge_sort writes, equal
+ * keys included, on the inputs its run detection and galloping are built for:
+ * random, sorted, reversed (descending with ties), sorted with random rows
+ * appended, and few unique keys:
+ *
+ *   java adaptive_merge_sort_check [rows]
+ */
+public class adaptive_merge_sort_check {
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store random = sort_check.generate(n);
+        record_store sorted = sort_check.reference(random);
+        String[] names = {"random", "sorted", "reversed", "appended", "few unique"};
+        record_store[] inputs = {random, sorted, sort_check.reversed(sorted), appended(sorted, random),
+                sort_check.generate(n, 3, sort_check.SEED)};
+
+        for (int i = 0; i < inputs.length; i++) {
+            record_store expected = sort_check.reference(inputs[i]);
+            record_store actual = sort_check.copy(inputs[i]);
+            adaptive_merge_sort.sort(actual);
+            sort_check.expectIdentical("adaptive merge sort, " + names[i] + " input", expected, actual);
+        }
+    }
+
+    // The sorted rows with the last tenth replaced by unsorted ones
+    private static record_store appended(record_store sorted, record_store random) {
+        record_store rows = sort_check.copy(sorted);
+        int tail = rows.size() / 10;
+        for (int i = rows.size() - tail; i < rows.size(); i++) {
+            rows.keys[i] = random.keys[i];
+            rows.labels[i] = random.labels[i];
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Operations shared by the two AVL tree variants, avl_tree (nodes in parallel
+ * primitive arrays) and linked_avl_tree (one object per node), so both can be
+ * measured with the same driver. Keys are unique; labels are packed as in
+ * record_store.
+ */
+public interface avl_index {
+    long NOT_FOUND = -1L;
+
+    // Receives rows of a range scan in ascending key order
+    interface RowVisitor {
+        void visit(int key, long label);
+    }
+
+    // Adds the key, or replaces its label if it is already present; returns true if it was added
+    boolean insert(int key, long label);
+
+    // Removes the key; returns true if it was present
+    boolean delete(int key);
+
+    // Returns the label stored for the key, or NOT_FOUND
+    long get(int key);
+
+    // Visits every row with low <= key <= high in order; returns the number visited
+    int range(int low, int high, RowVisitor visitor);
+
+    // Replaces the contents with rows whose keys are in ascending order, in O(n)
+    void bulkLoad(int[] keys, long[] labels, int n);
+
+    int size();
+
+    int height();
+
+    // Walks the whole tree and returns its height, or -1 if keys are out of order, a
+    // stored height is stale or a node's subtrees differ in height by more than one
+    int verifiedHeight();
+
+    /*
+     * Checks that keys[0..n) is ascending and keeps only the last row of each run of
+     * equal keys, matching what repeated inserts would leave behind. Returns the
+     * input arrays unchanged when every key is already unique.
+     */
+    static record_store lastOfEachKey(int[] keys, long[] labels, int n) {
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (i + 1 < n && keys[i + 1] < keys[i]) {
+                throw new IllegalArgumentException("Keys are not sorted at row " + (i + 1));
+            }
+            if (i + 1 == n || keys[i + 1] != keys[i]) unique++;
+        }
+        if (unique == n) {
+            return new record_store(keys, labels, n);
+        }
+
+        record_store rows = new record_store(unique);
+        for (int i = 0; i < n; i++) {
+            if (i + 1 == n || keys[i + 1] != keys[i]) {
+                rows.add(keys[i], labels[i]);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,386 @@
+import java.io.*;
+import java.util.SplittableRandom;
+
+/**
+ * Array-based AVL tree. Node i lives at index i of parallel primitive arrays
+ * (key, label, left, right, height); index 0 is the empty subtree, and deleted
+ * nodes are chained through 'left' on a free list so their slots are reused.
+ * Compared to linked_avl_tree there are no object headers or references, which
+ * is what the main program measures:
+ *
+ *   java avl_tree <sorted_file> [--linked] [--ops=<count>]
+ *
+ * It bulk-loads a sorted output file from ../outputs, then times lookups,
+ * inserts, deletes and a range scan and reports heap bytes per key.
+ */
+public class avl_tree implements avl_index {
+    private static final int NIL = 0;
+    private static final int DEFAULT_OPS = 1_000_000;
+
+    private int[] keys;
+    private long[] labels;
+    private int[] left;
+    private int[] right;
+    private byte[] heights;
+    private int root = NIL;
+    private int size;
+    private int nextFree = 1; // first never-used slot
+    private int freeList = NIL; // deleted slots, linked through left[]
+
+    avl_tree(int capacity) {
+        allocate(Math.max(capacity, 1) + 1);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java avl_tree <sorted_file> [--linked] [--ops=<count>]");
+            return;
+        }
+
+        boolean linked = false;
+        int ops = DEFAULT_OPS;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--linked")) {
+                linked = true;
+            } else if (args[i].startsWith("--ops=")) {
+                try {
+                    ops = Integer.parseInt(args[i].substring("--ops=".length()));
+                } catch (NumberFormatException e) {
+                    ops = 0;
+                }
+                if (ops < 1) {
+                    System.out.println("Invalid operation count: " + args[i]);
+                    return;
+                }
+            } else {
+                System.out.println("Unknown option: " + args[i]);
+                return;
+            }
+        }
+
+        File inputFile = new File("../outputs", args[0]);
+        long baseHeap = usedHeap();
+        record_store rows;
+        try {
+            rows = csv_loader.load(inputFile);
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        avl_index tree = linked ? new linked_avl_tree() : new avl_tree(rows.size());
+        tree.bulkLoad(rows.keys, rows.labels, rows.size());
+        double buildMs = (System.nanoTime() - start) / 1_000_000.0;
+        int n = tree.size();
+        if (n == 0) {
+            System.out.println("Error: No data found in file.");
+            return;
+        }
+
+        // Lookup targets are existing keys; the input rows are dropped before measuring the heap
+        SplittableRandom random = new SplittableRandom(n);
+        int[] probes = new int[ops];
+        for (int i = 0; i < ops; i++) {
+            probes[i] = rows.keys[random.nextInt(rows.size())];
+        }
+        rows = null;
+        long treeBytes = usedHeap() - baseHeap - 4L * ops;
+
+        long found = 0;
+        start = System.nanoTime();
+        for (int key : probes) {
+            if (tree.get(key) != NOT_FOUND) found++;
+        }
+        double lookupNs = (System.nanoTime() - start) / (double) ops;
+
+        // Insert targets are keys the tree does not hold, so no dataset row is overwritten;
+        // only the keys that were actually added are deleted again
+        int[] fresh = new int[ops];
+        for (int i = 0; i < ops; i++) {
+            do {
+                fresh[i] = random.nextInt();
+            } while (tree.get(fresh[i]) != NOT_FOUND);
+        }
+        int[] inserted = new int[ops];
+        int added = 0;
+        start = System.nanoTime();
+        for (int key : fresh) {
+            if (tree.insert(key, 1L)) inserted[added++] = key;
+        }
+        double insertNs = (System.nanoTime() - start) / (double) ops;
+
+        int removed = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < added; i++) {
+            if (tree.delete(inserted[i])) removed++;
+        }
+        double deleteNs = (System.nanoTime() - start) / (double) Math.max(added, 1);
+        if (removed != added || tree.size() != n) {
+            System.out.println("Error: deleted " + removed + " of " + added + " inserted keys, " + tree.size()
+                    + " keys left of " + n);
+            return;
+        }
+
+        long[] checksum = new long[1];
+        start = System.nanoTime();
+        int scanned = tree.range(Integer.MIN_VALUE, Integer.MAX_VALUE, (key, label) -> checksum[0] += key);
+        double scanMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        String variant = linked ? "linked" : "array";
+        File outputFile = new File("../outputs", "avl_tree_" + variant + "_" + n + ".txt");
+        try (PrintWriter writer = new PrintWriter(outputFile)) {
+            writer.printf("Variant: %s%n", variant);
+            writer.printf("Keys: %d (height %d)%n", n, tree.height());
+            writer.printf("Bulk load time: %.3f ms%n", buildMs);
+            writer.printf("Heap used: %d bytes (%.1f bytes/key)%n", treeBytes, treeBytes / (double) n);
+            writer.printf("Lookup: %.1f ns/op (%d of %d found)%n", lookupNs, found, ops);
+            writer.printf("Insert: %.1f ns/op (%d new keys)%n", insertNs, added);
+            writer.printf("Delete: %.1f ns/op (%d inserted keys)%n", deleteNs, removed);
+            writer.printf("Range scan: %.3f ms for %d rows (checksum %d)%n", scanMs, scanned, checksum[0]);
+        } catch (IOException e) {
+            System.out.println("Error writing output file.");
+            return;
+        }
+
+        System.out.println("Processed " + n + " keys with the " + variant + " AVL tree.");
+        System.out.println("File saved to: " + outputFile.getAbsolutePath());
+    }
+
+    // Bytes in use after a full collection, for the footprint estimate
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Override
+    public boolean insert(int key, long label) {
+        int before = size;
+        root = insert(root, key, label);
+        return size > before;
+    }
+
+    @Override
+    public boolean delete(int key) {
+        int before = size;
+        root = delete(root, key);
+        return size < before;
+    }
+
+    @Override
+    public long get(int key) {
+        int node = root;
+        while (node != NIL) {
+            int nodeKey = keys[node];
+            if (key == nodeKey) return labels[node];
+            node = key < nodeKey ? left[node] : right[node];
+        }
+        return NOT_FOUND;
+    }
+
+    @Override
+    public int range(int low, int high, RowVisitor visitor) {
+        return low > high ? 0 : range(root, low, high, visitor);
+    }
+
+    @Override
+    public void bulkLoad(int[] sortedKeys, long[] sortedLabels, int n) {
+        record_store rows = avl_index.lastOfEachKey(sortedKeys, sortedLabels, n);
+        root = NIL;
+        size = 0;
+        nextFree = 1;
+        freeList = NIL;
+        if (keys.length != rows.size() + 1) {
+            allocate(rows.size() + 1);
+        }
+        root = build(rows.keys, rows.labels, 0, rows.size() - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int height() {
+        return heights[root];
+    }
+
+    @Override
+    public int verifiedHeight() {
+        return verifiedHeight(root, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Height of the subtree whose keys must lie strictly between low and high, or -1
+    private int verifiedHeight(int node, long low, long high) {
+        if (node == NIL) return 0;
+        int key = keys[node];
+        if (key <= low || key >= high) return -1;
+        int leftHeight = verifiedHeight(left[node], low, key);
+        int rightHeight = verifiedHeight(right[node], key, high);
+        if (leftHeight < 0 || rightHeight < 0 || Math.abs(leftHeight - rightHeight) > 1) return -1;
+        int height = 1 + Math.max(leftHeight, rightHeight);
+        return heights[node] == height ? height : -1;
+    }
+
+    // Builds a perfectly balanced subtree from sorted rows [lo, hi]
+    private int build(int[] sortedKeys, long[] sortedLabels, int lo, int hi) {
+        if (lo > hi) return NIL;
+        int mid = (lo + hi) >>> 1;
+        int node = newNode(sortedKeys[mid], sortedLabels[mid]);
+        int leftChild = build(sortedKeys, sortedLabels, lo, mid - 1);
+        int rightChild = build(sortedKeys, sortedLabels, mid + 1, hi);
+        left[node] = leftChild;
+        right[node] = rightChild;
+        update(node);
+        return node;
+    }
+
+    private int insert(int node, int key, long label) {
+        if (node == NIL) {
+            return newNode(key, label);
+        }
+        // The child is computed first: inserting may grow the arrays and replace left/right
+        if (key < keys[node]) {
+            int child = insert(left[node], key, label);
+            left[node] = child;
+        } else if (key > keys[node]) {
+            int child = insert(right[node], key, label);
+            right[node] = child;
+        } else {
+            labels[node] = label;
+            return node;
+        }
+        return rebalance(node);
+    }
+
+    private int delete(int node, int key) {
+        if (node == NIL) return NIL;
+        if (key < keys[node]) {
+            left[node] = delete(left[node], key);
+        } else if (key > keys[node]) {
+            right[node] = delete(right[node], key);
+        } else {
+            if (left[node] == NIL || right[node] == NIL) {
+                int child = left[node] != NIL ? left[node] : right[node];
+                freeNode(node);
+                return child;
+            }
+            // Two children: take over the successor's row and remove the successor
+            int successor = right[node];
+            while (left[successor] != NIL) successor = left[successor];
+            keys[node] = keys[successor];
+            labels[node] = labels[successor];
+            right[node] = delete(right[node], keys[successor]);
+        }
+        return rebalance(node);
+    }
+
+    private int range(int node, int low, int high, RowVisitor visitor) {
+        if (node == NIL) return 0;
+        int count = 0;
+        int key = keys[node];
+        if (low < key) count += range(left[node], low, high, visitor);
+        if (low <= key && key <= high) {
+            visitor.visit(key, labels[node]);
+            count++;
+        }
+        if (key < high) count += range(right[node], low, high, visitor);
+        return count;
+    }
+
+    private int rebalance(int node) {
+        update(node);
+        int balance = heights[left[node]] - heights[right[node]];
+        if (balance > 1) {
+            if (heights[left[left[node]]] < heights[right[left[node]]]) {
+                left[node] = rotateLeft(left[node]);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (heights[right[right[node]]] < heights[left[right[node]]]) {
+                right[node] = rotateRight(right[node]);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        right[pivot] = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        left[pivot] = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private void update(int node) {
+        heights[node] = (byte) (1 + Math.max(heights[left[node]], heights[right[node]]));
+    }
+
+    private int newNode(int key, long label) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (nextFree == keys.length) {
+                allocate(keys.length + (keys.length >> 1) + 1);
+            }
+            node = nextFree++;
+        }
+        keys[node] = key;
+        labels[node] = label;
+        left[node] = NIL;
+        right[node] = NIL;
+        heights[node] = 1;
+        size++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        left[node] = freeList;
+        right[node] = NIL;
+        heights[node] = 0;
+        freeList = node;
+        size--;
+    }
+
+    // Grows (or on bulk load, resizes) the node arrays, keeping slots [0, nextFree)
+    private void allocate(int capacity) {
+        int keep = keys == null ? 0 : Math.min(nextFree, capacity);
+        keys = copy(keys, capacity, keep);
+        labels = copyLong(labels, capacity, keep);
+        left = copy(left, capacity, keep);
+        right = copy(right, capacity, keep);
+        byte[] newHeights = new byte[capacity];
+        if (heights != null) System.arraycopy(heights, 0, newHeights, 0, keep);
+        heights = newHeights;
+    }
+
+    private static int[] copy(int[] array, int capacity, int keep) {
+        int[] result = new int[capacity];
+        if (array != null) System.arraycopy(array, 0, result, 0, keep);
+        return result;
+    }
+
+    private static long[] copyLong(long[] array, int capacity, int keep) {
+        long[] result = new long[capacity];
+        if (array != null) System.arraycopy(array, 0, result, 0, keep);
+        return result;
+    }
+}
@@ -0,0 +1,265 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Checks avl_tree and linked_avl_tree against a sorted array of the same rows.
+ * Both trees get the same inserts, deletes, lookups and range scans as the array;
+ * after every batch their contents must match it, every node must be balanced with
+ * a correct stored height, and both trees must have the same height (same rules,
+ * same shape). Cases cover the single and double rotations of ordered and zig-zag
+ * inserts, deletes of nodes with two children (successor takes over), reuse of
+ * deleted slots, bulk loads with repeated keys and range bounds on and between keys:
+ *
+ *   java avl_tree_check [rows]
+ */
+public class avl_tree_check {
+    private static final int DEFAULT_ROWS = 20_000;
+    private static final int BATCH = 500;
+    private static final long SEED = 2510;
+
+    // Rows in ascending key order, one per key, as the trees should hold them
+    private static final class Reference {
+        int[] keys = new int[16];
+        long[] labels = new long[16];
+        int size;
+
+        // Index of the key, or -(insertion point) - 1
+        int find(int key) {
+            int lo = 0, hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid] < key) lo = mid + 1;
+                else if (keys[mid] > key) hi = mid - 1;
+                else return mid;
+            }
+            return -lo - 1;
+        }
+
+        boolean insert(int key, long label) {
+            int i = find(key);
+            if (i >= 0) {
+                labels[i] = label;
+                return false;
+            }
+            i = -i - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                labels = Arrays.copyOf(labels, size * 2);
+            }
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            System.arraycopy(labels, i, labels, i + 1, size - i);
+            keys[i] = key;
+            labels[i] = label;
+            size++;
+            return true;
+        }
+
+        boolean delete(int key) {
+            int i = find(key);
+            if (i < 0) return false;
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(labels, i + 1, labels, i, size - i - 1);
+            size--;
+            return true;
+        }
+
+        long get(int key) {
+            int i = find(key);
+            return i >= 0 ? labels[i] : avl_index.NOT_FOUND;
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, DEFAULT_ROWS);
+        SplittableRandom random = new SplittableRandom(SEED);
+
+        // Ordered inserts rotate one way only; zig-zag inserts need double rotations
+        int[] ascending = new int[n], descending = new int[n], zigzag = new int[n];
+        for (int i = 0; i < n; i++) {
+            ascending[i] = i;
+            descending[i] = n - 1 - i;
+            zigzag[i] = i % 2 == 0 ? i / 2 : n - 1 - i / 2;
+        }
+        insertAll("ascending inserts", ascending);
+        insertAll("descending inserts", descending);
+        insertAll("zig-zag inserts", zigzag);
+
+        // Small key space: inserts replace labels, deletes miss, lookups hit and miss
+        Trees trees = new Trees();
+        randomBatches("random operations, few keys", trees, random, n, Math.max(16, n / 8));
+        randomBatches("random operations, sparse keys", trees, random, n, Integer.MAX_VALUE);
+
+        // Bulk load of sorted rows with repeated keys keeps the last row of each key
+        record_store rows = sort_check.reference(sort_check.generate(n));
+        trees = new Trees();
+        trees.bulkLoad(rows.keys, rows.labels, rows.size());
+        trees.expectSame("bulk load with repeated keys", random);
+        randomBatches("random operations after a bulk load", trees, random, n, Math.max(16, n / 2));
+
+        // Every key of a perfectly balanced tree: inner nodes have two children, so
+        // their deletes hand over to the successor; deleted slots are then reused
+        int[] distinct = new int[n];
+        long[] labels = new long[n];
+        for (int i = 0; i < n; i++) {
+            distinct[i] = 2 * i;
+            labels[i] = i;
+        }
+        trees = new Trees();
+        trees.bulkLoad(distinct, labels, n);
+        for (int i = 0; i < n; i += 2) {
+            trees.delete(distinct[i]);
+            if (i % (2 * BATCH) == 0) trees.check("deletes with two children", random);
+        }
+        trees.expectSame("deletes with two children", random);
+        for (int i = 1; i < n; i += 2) trees.delete(distinct[i]);
+        trees.expectSame("delete every key", random);
+        for (int i = 0; i < n; i++) trees.insert(distinct[n - 1 - i] + 1, i);
+        trees.expectSame("inserts into deleted slots", random);
+
+        try {
+            new avl_tree(4).bulkLoad(new int[] {2, 1}, new long[2], 2);
+            sort_check.fail("bulk load of unsorted keys", "it was accepted");
+        } catch (IllegalArgumentException e) {
+            System.out.println("OK bulk load of unsorted keys is refused");
+        }
+    }
+
+    // Both trees and the reference, changed together
+    private static final class Trees {
+        final avl_index array = new avl_tree(16);
+        final avl_index linked = new linked_avl_tree();
+        Reference reference = new Reference();
+
+        void insert(int key, long label) {
+            boolean expected = reference.insert(key, label);
+            expect("insert " + key, expected, array.insert(key, label), linked.insert(key, label));
+        }
+
+        void delete(int key) {
+            boolean expected = reference.delete(key);
+            expect("delete " + key, expected, array.delete(key), linked.delete(key));
+        }
+
+        void bulkLoad(int[] keys, long[] labels, int n) {
+            array.bulkLoad(keys, labels, n);
+            linked.bulkLoad(keys, labels, n);
+            reference = new Reference();
+            for (int i = 0; i < n; i++) reference.insert(keys[i], labels[i]);
+        }
+
+        void get(int key) {
+            long expected = reference.get(key);
+            long a = array.get(key), l = linked.get(key);
+            if (a != expected || l != expected) {
+                sort_check.fail("get " + key, "expected " + expected + ", array tree " + a + ", linked tree " + l);
+            }
+        }
+
+        // The rows of [low, high] in order, with the count each tree returns
+        void range(int low, int high) {
+            int found = reference.find(low);
+            int first = found >= 0 ? found : -found - 1;
+            int end = first;
+            while (end < reference.size && reference.keys[end] <= high) end++;
+            int expected = low > high ? 0 : end - first;
+            for (avl_index tree : new avl_index[] {array, linked}) {
+                String what = "range [" + low + ", " + high + "] of the " + name(tree);
+                int[] next = {first};
+                int count = tree.range(low, high, (key, label) -> {
+                    int i = next[0]++;
+                    if (i >= first + expected || reference.keys[i] != key || reference.labels[i] != label) {
+                        sort_check.fail(what, "row " + (i - first + 1) + " is " + key + "/" + label);
+                    }
+                });
+                if (count != expected || next[0] != first + expected) {
+                    sort_check.fail(what, "expected " + expected + " rows, got " + count);
+                }
+            }
+        }
+
+        void expectSame(String what, SplittableRandom random) {
+            check(what, random);
+            System.out.println("OK " + what + ", " + reference.size + " keys, height " + array.height());
+        }
+
+        // Contents, balance and heights, plus range scans with bounds on, between and
+        // outside the keys
+        void check(String what, SplittableRandom random) {
+            int n = reference.size;
+            for (avl_index tree : new avl_index[] {array, linked}) {
+                if (tree.size() != n) {
+                    sort_check.fail(what, "the " + name(tree) + " holds " + tree.size() + " keys, expected " + n);
+                }
+                int height = tree.verifiedHeight();
+                if (height < 0 || height != tree.height()) {
+                    sort_check.fail(what, "the " + name(tree) + " is out of order or unbalanced (height "
+                            + tree.height() + ", walked " + height + ")");
+                }
+                // AVL bound: height < 1.4405 log2(n + 2)
+                if (height > 1.4405 * Math.log(n + 2) / Math.log(2)) {
+                    sort_check.fail(what, "the " + name(tree) + " is " + height + " high for " + n + " keys");
+                }
+            }
+            if (array.height() != linked.height()) {
+                sort_check.fail(what, "heights differ: array tree " + array.height() + ", linked tree "
+                        + linked.height());
+            }
+            range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+            range(Integer.MAX_VALUE, Integer.MIN_VALUE);
+            if (n > 0) {
+                int lowKey = reference.keys[0], highKey = reference.keys[n - 1];
+                range(lowKey, lowKey);
+                range(highKey, Integer.MAX_VALUE);
+                range(Integer.MIN_VALUE, lowKey - 1L < Integer.MIN_VALUE ? lowKey : lowKey - 1);
+                for (int i = 0; i < 20; i++) {
+                    int a = reference.keys[random.nextInt(n)], b = reference.keys[random.nextInt(n)];
+                    range(Math.min(a, b), Math.max(a, b));
+                    range(Math.min(a, b) + 1, Math.max(a, b) - 1);
+                    get(a);
+                    get(a + 1);
+                }
+            }
+        }
+
+        private String name(avl_index tree) {
+            return tree == array ? "array tree" : "linked tree";
+        }
+    }
+
+    private static void expect(String what, boolean expected, boolean array, boolean linked) {
+        if (array != expected || linked != expected) {
+            sort_check.fail(what, "expected " + expected + ", array tree " + array + ", linked tree " + linked);
+        }
+    }
+
+    private static void insertAll(String what, int[] keys) {
+        Trees trees = new Trees();
+        for (int i = 0; i < keys.length; i++) {
+            trees.insert(keys[i], i);
+            if ((i + 1) % BATCH == 0) trees.check(what, new SplittableRandom(i));
+        }
+        trees.expectSame(what, new SplittableRandom(SEED));
+    }
+
+    // n operations in batches: inserts, deletes, lookups and short range scans on keys
+    // drawn from [0, keyRange)
+    private static void randomBatches(String what, Trees trees, SplittableRandom random, int n, int keyRange) {
+        for (int done = 0; done < n; done += BATCH) {
+            for (int i = 0; i < BATCH; i++) {
+                int key = random.nextInt(keyRange);
+                int op = random.nextInt(10);
+                if (op < 5) {
+                    trees.insert(key, random.nextLong(Long.MAX_VALUE));
+                } else if (op < 8) {
+                    trees.delete(key);
+                } else if (op < 9) {
+                    trees.get(key);
+                } else {
+                    trees.range(key, key + random.nextInt(Math.max(1, keyRange / 16)));
+                }
+            }
+            if (done + BATCH < n) trees.check(what, random);
+        }
+        trees.expectSame(what, random);
+    }
+}
@@ -2,8 +2,24 @@ import java.io.*;
 import java.util.*;
 
 public class binary_search {
+    // Keeps the search results alive so the timed loops cannot be optimized away
+    static volatile long sink;
 
     public static void main(String[] args) {
+        String layoutNames = "all";
+        for (String arg : args) {
+            if (arg.startsWith("--layout=")) {
+                layoutNames = arg.substring("--layout=".length());
+            } else {
+                System.out.println("Usage: java binary_search [--layout=all|classic|branchless|eytzinger|btree]");
+                return;
+            }
+        }
+        if (!layoutNames.equals("all") && !Arrays.asList(search_layouts.NAMES).contains(layoutNames)) {
+            System.out.println("Unknown layout: " + layoutNames);
+            return;
+        }
+
         File baseDir;
         try {
             baseDir = new File(System.getProperty("user.dir")).getParentFile();
@@ -27,68 +43,71 @@ public class binary_search {
             return;
         }
 
-        List<Integer> dataList = new ArrayList<>();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) continue;
-
-                String[] parts = line.split(",", 2);
-                if (parts.length >= 1) {
-                    try {
-                        int tempNum = Integer.parseInt(parts[0].trim().replaceAll("\"", ""));
-                        dataList.add(tempNum);
-                    } catch (NumberFormatException e) {
-                        System.err.println("Invalid number: " + parts[0]);
-                    }
-                }
-            }
+        record_store store;
+        try {
+            store = csv_loader.load(inputFile);
         } catch (IOException e) {
             System.out.println("Error reading file.");
             return;
         }
 
-        int n = dataList.size();
-        int[] data = new int[n];
-        for (int i = 0; i < n; i++) {
-            data[i] = dataList.get(i);
-        }
-
-        // Best case (middle element)
-        int bestCase = data[n / 2];
-        long start = System.nanoTime();
-        for (int i = 0; i < n; i++) {
-            binarySearch(data, bestCase);
-        }
-        long end = System.nanoTime();
-        double bestTime = (end - start) / 1_000_000.0;
-
-        // Average case (random elements)
-        Random random = new Random();
-        start = System.nanoTime();
-        for (int i = 0; i < n; i++) {
-            int randIndex = random.nextInt(n);
-            binarySearch(data, data[randIndex]);
-        }
-        end = System.nanoTime();
-        double avgTime = (end - start) / 1_000_000.0;
-
-        // Worst case (value not in list)
-        int worstCase = data[n - 1] + 1;
-        start = System.nanoTime();
-        for (int i = 0; i < n; i++) {
-            binarySearch(data, worstCase);
-        }
-        end = System.nanoTime();
-        double worstTime = (end - start) / 1_000_000.0;
+        int n = store.size();
+        int[] data = Arrays.copyOf(store.keys, n);
 
+        String[] layouts = layoutNames.equals("all") ? search_layouts.NAMES : new String[]{layoutNames};
         File outputFile = new File(outputDir, "binary_search_" + n + ".txt");
+        long seed = new Random().nextLong();
+
         try (PrintWriter writer = new PrintWriter(outputFile)) {
-            writer.printf("Best case time: %.3f ms%n", bestTime);
-            writer.printf("Average case time: %.3f ms%n", avgTime);
-            writer.printf("Worst case time: %.3f ms%n", worstTime);
+            for (String name : layouts) {
+                long start = System.nanoTime();
+                search_layouts.Layout layout = search_layouts.create(name, data);
+                long end = System.nanoTime();
+                double buildTime = (end - start) / 1_000_000.0;
+                long checksum = 0;
+                boolean counted = op_counters.ENABLED && name.equals("classic");
+                if (counted) op_counters.start();
+
+                // Best case (middle element)
+                int bestCase = data[n / 2];
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    checksum += layout.search(bestCase);
+                }
+                end = System.nanoTime();
+                double bestTime = (end - start) / 1_000_000.0;
+
+                // Average case (random elements, same sequence for every layout)
+                Random random = new Random(seed);
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    int randIndex = random.nextInt(n);
+                    checksum += layout.search(data[randIndex]);
+                }
+                end = System.nanoTime();
+                double avgTime = (end - start) / 1_000_000.0;
+
+                // Worst case (value not in list)
+                int worstCase = data[n - 1] + 1;
+                start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    checksum += layout.search(worstCase);
+                }
+                end = System.nanoTime();
+                double worstTime = (end - start) / 1_000_000.0;
+                sink = checksum;
+                if (counted) {
+                    // Probes over all 3n lookups of the best, average and worst case; the
+                    // search counts nothing else
+                    op_counters.report("binary_search", name, filename, n, op_counters.PROBES, true);
+                }
+
+                writer.printf("Layout: %s (built in %.3f ms)%n", name, buildTime);
+                writer.printf("Best case time: %.3f ms (%.1f ns/lookup)%n", bestTime, bestTime * 1e6 / n);
+                writer.printf("Average case time: %.3f ms (%.1f ns/lookup)%n", avgTime, avgTime * 1e6 / n);
+                writer.printf("Worst case time: %.3f ms (%.1f ns/lookup)%n", worstTime, worstTime * 1e6 / n);
+                writer.println();
+            }
         } catch (IOException e) {
             System.out.println("Error writing output file.");
         }
@@ -101,6 +120,7 @@ public class binary_search {
         int left = 0, right = array.length - 1;
         while (left <= right) {
             int mid = (left + right) / 2;
+            if (op_counters.ENABLED) op_counters.probes++;
             if (array[mid] == target)
                 return mid;
             else if (array[mid] < target)
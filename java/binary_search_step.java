@@ -1,77 +1,151 @@
-import java.io.*;
-import java.util.*;
-
-public class binary_search_step {
-
-    public static List<String[]> readCSV(String filename) {
-        List<String[]> data = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] row = line.split(",", 2);
-                if (row.length >= 2) {
-                    try {
-                        Integer.parseInt(row[0]); // ensure it's a number
-                        data.add(row);
-                    } catch (NumberFormatException e) {
-                    } // skip invalid
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading file: " + e.getMessage());
-        }
-        return data;
-    }
-
-    public static List<String> binarySearchSteps(List<String[]> data, int target) {
-        List<String> steps = new ArrayList<>();
-        List<int[]> sorted = new ArrayList<>();
-        
-        for (String[] row : data) {
-            sorted.add(new int[]{Integer.parseInt(row[0]), data.indexOf(row)});
-        }
-        sorted.sort(Comparator.comparingInt(a -> a[0]));
-
-        int low = 0, high = sorted.size() - 1;
-
-        while (low <= high) {
-            int mid = low + (high - low) / 2;
-            int num = sorted.get(mid)[0];
-            int originalIndex = sorted.get(mid)[1];
-            String word = data.get(originalIndex)[1];
-            steps.add(mid + ": " + num + "/" + word);
-
-            if (num == target) {
-                return steps;
-            } else if (num < target) {
-                low = mid + 1;
-            } else {
-                high = mid - 1;
-            }
-        }
-
-        steps.add("-1"); // not found
-        return steps;
-    }
-
-    public static void txtFile(List<String> steps, int target) {
-        String filename = "binary_search_step_" + target + ".txt";
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            for (String step : steps) {
-                writer.println(step);
-            }
-            System.out.println("Steps written to " + filename);
-        } catch (IOException e) {
-            System.out.println("Error writing file: " + e.getMessage());
-        }
-    }
-
-    public static void main(String[] args) {
-        String filename = "dataset_sample_1000.csv";
-        int target = 613479842; // change target value here
-
-        List<String[]> data = readCSV(filename);
-        List<String> steps = binarySearchSteps(data, target);
-        txtFile(steps, target);
-    }
-}
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class binary_search_step {
+
+    // Reads the label of the CSV row that starts at the given byte offset: the UTF-8 text
+    // after the first comma, up to the end of the line however long it is
+    public static String readLabel(FileChannel source, long offset, ByteBuffer line) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        for (long pos = offset; ; ) {
+            line.clear();
+            int read = source.read(line, pos);
+            if (read <= 0) break;
+            byte[] bytes = line.array();
+            int end = 0;
+            while (end < read && bytes[end] != '\n') end++;
+            text.write(bytes, 0, end);
+            if (end < read) break;
+            pos += read;
+        }
+        byte[] row = text.toByteArray();
+        int start = 0, end = row.length;
+        while (start < end && row[start] != ',') start++;
+        if (start < end) start++;
+        if (end > start && row[end - 1] == '\r') end--;
+        return new String(row, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    public static List<String> binarySearchSteps(key_index index, File dataset, FileChannel source, int target)
+            throws IOException {
+        List<String> steps = new ArrayList<>();
+        ByteBuffer line = ByteBuffer.allocate(256);
+        boolean binary = column_file.isColumnFile(dataset);
+
+        int low = 0, high = index.size() - 1;
+
+        while (low <= high) {
+            int mid = low + (high - low) / 2;
+            int num = index.key(mid);
+            String word = binary
+                    ? record_store.unpackLabel(column_file.readLabel(source, dataset, index.offset(mid)))
+                    : readLabel(source, index.offset(mid), line);
+            steps.add(mid + ": " + num + "/" + word);
+
+            if (num == target) {
+                return steps;
+            } else if (num < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        steps.add("-1"); // not found
+        return steps;
+    }
+
+    public static void txtFile(List<String> steps, int target) {
+        String filename = "binary_search_step_" + target + ".txt";
+        try (PrintWriter writer = new PrintWriter(new FileWriter(filename, StandardCharsets.UTF_8))) {
+            for (String step : steps) {
+                writer.println(step);
+            }
+            System.out.println("Steps written to " + filename);
+        } catch (IOException e) {
+            System.out.println("Error writing file: " + e.getMessage());
+        }
+    }
+
+    // Writes the steps of several targets into one file
+    public static void txtFile(List<List<String>> traces, int[] targets) {
+        String filename = "binary_search_step_" + targets.length + "_targets.txt";
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(filename, StandardCharsets.UTF_8)))) {
+            for (int t = 0; t < targets.length; t++) {
+                writer.println("Target: " + targets[t]);
+                for (String step : traces.get(t)) {
+                    writer.println(step);
+                }
+                writer.println();
+            }
+            System.out.println("Steps written to " + filename);
+        } catch (IOException e) {
+            System.out.println("Error writing file: " + e.getMessage());
+        }
+    }
+
+    // Reads one target per line, skipping blank lines
+    public static int[] readTargets(File file) throws IOException {
+        List<Integer> targets = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) targets.add(Integer.parseInt(line));
+            }
+        }
+        int[] result = new int[targets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = targets.get(i);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) {
+        String filename = "dataset_sample_1000.csv";
+        int[] targets = {613479842}; // default target when none are given
+
+        try {
+            if (args.length > 0) {
+                filename = args[0];
+            }
+            if (args.length == 2 && args[1].startsWith("--targets=")) {
+                targets = readTargets(new File(args[1].substring("--targets=".length())));
+            } else if (args.length > 1) {
+                targets = new int[args.length - 1];
+                for (int i = 1; i < args.length; i++) {
+                    targets[i - 1] = Integer.parseInt(args[i]);
+                }
+            }
+        } catch (NumberFormatException | IOException e) {
+            System.out.println("Usage: java binary_search_step [<dataset_file> [<target>... | --targets=<file>]]");
+            System.out.println("Invalid targets: " + e.getMessage());
+            return;
+        }
+
+        File dataset = new File(filename);
+        if (!dataset.exists()) {
+            dataset = new File("../datasets", filename);
+        }
+
+        // The sorted index is built on the first run and mapped on later ones
+        try (key_index index = key_index.open(dataset);
+             FileChannel source = FileChannel.open(dataset.toPath(), StandardOpenOption.READ)) {
+            if (targets.length == 1) {
+                txtFile(binarySearchSteps(index, dataset, source, targets[0]), targets[0]);
+            } else {
+                List<List<String>> traces = new ArrayList<>(targets.length);
+                for (int target : targets) {
+                    traces.add(binarySearchSteps(index, dataset, source, target));
+                }
+                txtFile(traces, targets);
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+        }
+    }
+}
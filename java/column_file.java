@@ -0,0 +1,222 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed-width binary dataset format, so a dataset can be mapped instead of parsed.
+ * Little-endian, both columns start on a page boundary:
+ *
+ *   header (4096 bytes): magic "RCOL", version, row count, generator seed (0 if unknown)
+ *   keys:   int[rows]  at offset 4096
+ *   labels: long[rows] at the next page boundary, packed as in record_store
+ *
+ * csv_loader recognises these files by their magic, so every program that loads
+ * a dataset through it accepts either format. The main program converts:
+ *
+ *   java column_file <input> [<output>]
+ *
+ * CSV input is written as binary (".csv" becomes ".bin") and binary input as CSV.
+ */
+public class column_file {
+    static final String EXTENSION = ".bin";
+    static final int MAGIC = 0x4C4F4352; // "RCOL"
+    private static final int VERSION = 1;
+    static final int PAGE_SIZE = 4096;
+    private static final long MAX_MAP = 1L << 30;
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java column_file <input> [<output>]");
+            return;
+        }
+
+        File input = new File(args[0]);
+        if (!input.exists()) {
+            input = new File("../datasets", args[0]);
+        }
+
+        try {
+            boolean toCsv = isColumnFile(input);
+            File output;
+            if (args.length == 2) {
+                output = new File(args[1]);
+            } else {
+                String name = input.getPath();
+                int dot = name.lastIndexOf('.');
+                if (dot > name.lastIndexOf(File.separatorChar)) name = name.substring(0, dot);
+                output = new File(name + (toCsv ? ".csv" : EXTENSION));
+            }
+
+            long startTime = System.currentTimeMillis();
+            record_store rows = csv_loader.load(input);
+            if (toCsv) {
+                merge_sort.writeOutput(rows, output.getPath());
+            } else {
+                write(rows, output, 0);
+            }
+            long endTime = System.currentTimeMillis();
+
+            System.out.println("Converted " + rows.size() + " rows to " + output.getPath());
+            System.out.println("Execution time (ms): " + (endTime - startTime));
+        } catch (IOException e) {
+            System.err.println("Error converting file: " + e.getMessage());
+        }
+    }
+
+    // True if the file starts with the column file magic
+    static boolean isColumnFile(File file) throws IOException {
+        if (!file.isFile() || file.length() < PAGE_SIZE) return false;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(magic, 0);
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    static long keysOffset() {
+        return PAGE_SIZE;
+    }
+
+    static long labelsOffset(long rows) {
+        return align(PAGE_SIZE + rows * Integer.BYTES);
+    }
+
+    static long fileSize(long rows) {
+        return labelsOffset(rows) + rows * Long.BYTES;
+    }
+
+    private static long align(long offset) {
+        return (offset + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    // The header page of a file with the given row count and seed
+    static ByteBuffer header(long rows, long seed) {
+        ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(rows).putLong(seed);
+        header.clear();
+        return header;
+    }
+
+    // Row count from the header, after checking magic, version and file size
+    static long rows(FileChannel channel, File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        long rows = header.getLong(8);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || rows < 0
+                || channel.size() != fileSize(rows)) {
+            throw new IOException("Not a valid column file: " + file);
+        }
+        return rows;
+    }
+
+    static long seed(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            rows(channel, file);
+            ByteBuffer seed = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(seed, 16);
+            return seed.getLong(0);
+        }
+    }
+
+    // Loads every row
+    static record_store read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long rows = rows(channel, file);
+            return readRange(channel, file, rows, 0, rows);
+        }
+    }
+
+    // Loads the rows with 1-based numbers in [startRow, endRow], like csv_loader.loadRows
+    static record_store readRows(File file, long startRow, long endRow) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long rows = rows(channel, file);
+            long from = Math.max(0, startRow - 1);
+            long to = Math.min(rows, endRow);
+            return readRange(channel, file, rows, from, Math.max(from, to));
+        }
+    }
+
+    // Label of one row, read positionally (for lookups that do not load the file)
+    static long readLabel(FileChannel channel, File file, long row) throws IOException {
+        long rows = rows(channel, file);
+        ByteBuffer label = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(label, labelsOffset(rows) + row * Long.BYTES);
+        return label.getLong(0);
+    }
+
+    private static record_store readRange(FileChannel channel, File file, long rows, long from, long to)
+            throws IOException {
+        long count = to - from;
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many rows in " + file + ": " + count);
+        }
+        int n = (int) count;
+        int[] keys = new int[Math.max(n, 1)];
+        long[] labels = new long[Math.max(n, 1)];
+
+        // Columns are copied out of the mapping in slices of at most MAX_MAP bytes
+        long keysAt = keysOffset() + from * Integer.BYTES;
+        long labelsAt = labelsOffset(rows) + from * Long.BYTES;
+        for (int done = 0; done < n; ) {
+            int slice = (int) Math.min(n - done, MAX_MAP / Integer.BYTES);
+            channel.map(FileChannel.MapMode.READ_ONLY, keysAt + (long) done * Integer.BYTES,
+                    (long) slice * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(keys, done, slice);
+            done += slice;
+        }
+        for (int done = 0; done < n; ) {
+            int slice = (int) Math.min(n - done, MAX_MAP / Long.BYTES);
+            channel.map(FileChannel.MapMode.READ_ONLY, labelsAt + (long) done * Long.BYTES,
+                    (long) slice * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(labels, done, slice);
+            done += slice;
+        }
+        return new record_store(keys, labels, n);
+    }
+
+    // Writes the store's rows; seed records how the data was generated, 0 if unknown
+    static void write(record_store store, File file, long seed) throws IOException {
+        int n = store.size();
+        // Only packed labels fit the label column; checked before the file is touched
+        for (int i = 0; i < n; i++) {
+            if (record_store.isExternal(store.labels[i])) {
+                throw new IOException("Row " + (i + 1) + " has a label that is not 1-12 lowercase letters ("
+                        + store.labelText(store.labels[i]) + "); keep this dataset as CSV");
+            }
+        }
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, header(n, seed), 0);
+
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            long position = keysOffset();
+            for (int i = 0; i < n; i++) {
+                if (buf.remaining() < Integer.BYTES) position = flush(out, buf, position);
+                buf.putInt(store.keys[i]);
+            }
+            flush(out, buf, position);
+
+            position = labelsOffset(n);
+            for (int i = 0; i < n; i++) {
+                if (buf.remaining() < Long.BYTES) position = flush(out, buf, position);
+                buf.putLong(store.labels[i]);
+            }
+            flush(out, buf, position);
+        }
+    }
+
+    // Writes the buffer's contents at the position; returns the position after them
+    private static long flush(FileChannel out, ByteBuffer buf, long position) throws IOException {
+        buf.flip();
+        position = writeFully(out, buf, position);
+        buf.clear();
+        return position;
+    }
+
+    static long writeFully(FileChannel out, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += out.write(buf, position);
+        }
+        return position;
+    }
+}
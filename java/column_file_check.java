@@ -0,0 +1,162 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Round-trip check for the binary column format. Generated rows, with keys at both
+ * ends of the int range and labels of 1 to 12 letters, are written as a column file
+ * and read back whole, by row range, by single label and through csv_loader; a CSV
+ * converted to binary and back with the main program must come back byte for byte.
+ * Sizes put the label column right after a full key page and one row past it,
+ * and it must start on a page boundary.
+ * Side-table labels, truncated files and a wrong version are refused:
+ *
+ *   java column_file_check [rows]
+ */
+public class column_file_check {
+    private static final long SEED = 42;
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        int perPage = column_file.PAGE_SIZE / Integer.BYTES;
+        new File("../temp").mkdirs();
+        try {
+            for (int size : new int[] {0, 1, perPage - 1, perPage, perPage + 1, n}) {
+                record_store rows = sort_check.generate(size, Integer.MAX_VALUE, sort_check.SEED + size);
+                if (size > 1) {
+                    rows.keys[0] = Integer.MIN_VALUE;
+                    rows.keys[1] = Integer.MAX_VALUE;
+                    rows.labels[1] = rows.label("zzzzzzzzzzzz");
+                }
+                expectRoundTrip(size + " rows", rows);
+                if (size > 0) expectConversion(size + " rows", rows);
+            }
+            expectRefused();
+        } catch (IOException e) {
+            sort_check.fail("column file", e.getMessage());
+        }
+    }
+
+    // Whole file, row ranges, single labels and csv_loader all return the written rows
+    private static void expectRoundTrip(String what, record_store rows) throws IOException {
+        int n = rows.size();
+        File file = temp("column_file_check" + column_file.EXTENSION);
+        column_file.write(rows, file, SEED);
+        long labelsAt = column_file.labelsOffset(n);
+        if (labelsAt % column_file.PAGE_SIZE != 0 || labelsAt < column_file.keysOffset() + (long) n * Integer.BYTES) {
+            sort_check.fail(what, "the label column starts at " + labelsAt + ", not on a page after the keys");
+        }
+        if (!column_file.isColumnFile(file) || file.length() != column_file.fileSize(n)
+                || column_file.seed(file) != SEED) {
+            sort_check.fail(what, "the header or file size is wrong (" + file.length() + " bytes, expected "
+                    + column_file.fileSize(n) + ")");
+        }
+        expectRows(what, rows, column_file.read(file));
+        if (n > 0) expectRows(what + ", through csv_loader", rows, csv_loader.load(file));
+
+        // 1-based ranges: single rows at both ends, the middle, clamped and empty ranges
+        long[][] ranges = {{1, 1}, {n, n}, {n / 3 + 1, 2 * n / 3}, {0, n + 5}, {n + 1, n + 10}, {5, 4}};
+        for (long[] range : ranges) {
+            int from = (int) Math.max(0, range[0] - 1), to = (int) Math.max(from, Math.min(n, range[1]));
+            record_store expected = new record_store(Math.max(1, to - from));
+            for (int i = from; i < to; i++) expected.add(rows.keys[i], rows.labels[i]);
+            expectRows(what + ", rows " + range[0] + " to " + range[1], expected,
+                    column_file.readRows(file, range[0], range[1]));
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int row : new int[] {0, n / 2, n - 1}) {
+                if (row >= 0 && row < n && column_file.readLabel(channel, file, row) != rows.labels[row]) {
+                    sort_check.fail(what, "label of row " + (row + 1) + " reads as "
+                            + column_file.readLabel(channel, file, row) + ", expected " + rows.labels[row]);
+                }
+            }
+        }
+        file.delete();
+        System.out.println("OK " + what + ", written and read back");
+    }
+
+    // CSV to binary and back with the converter gives the same CSV bytes
+    private static void expectConversion(String what, record_store rows) throws IOException {
+        File csv = sort_check.writeCSV(rows, "column_file_check.csv");
+        File binary = temp("column_file_check_converted" + column_file.EXTENSION);
+        File back = temp("column_file_check_converted.csv");
+        quietly(() -> column_file.main(new String[] {csv.getPath(), binary.getPath()}));
+        quietly(() -> column_file.main(new String[] {binary.getPath(), back.getPath()}));
+        long at = Files.mismatch(csv.toPath(), back.toPath());
+        if (at >= 0) {
+            sort_check.fail(what, "the CSV converted to binary and back differs at byte " + at);
+        }
+        binary.delete();
+        back.delete();
+        System.out.println("OK " + what + ", CSV to binary and back");
+    }
+
+    private static void expectRefused() throws IOException {
+        record_store rows = sort_check.generate(100);
+        rows.labels[50] = rows.label("Not packable");
+        File file = temp("column_file_check_refused" + column_file.EXTENSION);
+        file.delete();
+        try {
+            column_file.write(rows, file, 0);
+            sort_check.fail("side-table label", "it was written");
+        } catch (IOException e) {
+            if (file.exists()) sort_check.fail("side-table label", "the file was created before refusing");
+            System.out.println("OK side-table label is refused");
+        }
+
+        rows = sort_check.generate(100);
+        column_file.write(rows, file, 0);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(file.length() - 1);
+        }
+        expectUnreadable("truncated file", file);
+
+        column_file.write(rows, file, 0);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {99}), Integer.BYTES);
+        }
+        expectUnreadable("wrong version", file);
+        file.delete();
+    }
+
+    private static void expectUnreadable(String what, File file) {
+        try {
+            column_file.read(file);
+            sort_check.fail(what, "it was read");
+        } catch (IOException e) {
+            System.out.println("OK " + what + " is refused");
+        }
+    }
+
+    // Same rows in the same order; sort_check.expectIdentical without the OK line
+    private static void expectRows(String what, record_store expected, record_store actual) {
+        if (expected.size() != actual.size()) {
+            sort_check.fail(what, "expected " + expected.size() + " rows, got " + actual.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.keys[i] != actual.keys[i] || expected.labels[i] != actual.labels[i]) {
+                sort_check.fail(what, "row " + (i + 1) + ": expected " + expected.format(i) + ", got "
+                        + actual.format(i));
+            }
+        }
+    }
+
+    private static File temp(String name) {
+        File file = new File("../temp", name);
+        file.deleteOnExit();
+        return file;
+    }
+
+    // Runs the converter without its progress lines; errors still go to stderr
+    private static void quietly(Runnable tool) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            tool.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Composite (number, label) ordering for quick_sort --composite and merge_sort
+ * --composite. Each row becomes one long: the key in the high 32 bits and the
+ * first 32 bits of the packed label below it. Packed labels keep the first
+ * character in the highest bits and pad with 0, so comparing the longs as signed
+ * numbers orders rows by key and then alphabetically by label, with a single
+ * primitive comparison per step. Both algorithms therefore write byte-identical
+ * output no matter how ties between keys were ordered in the input.
+ *
+ * quick_sort --composite runs the introsort shape of intro_quick_sort on the
+ * longs and merge_sort --composite a top-down merge sort.
+ *
+ * Labels of up to six characters fit completely; then the long is the whole row
+ * and the label is unpacked from it again after the sort. Longer labels ride
+ * along in a second array and rows whose longs tie are finished by full label.
+ * If any label sits in the store's side table (not lowercase a..z), the long
+ * holds the key and the first two characters of the label text instead, and ties
+ * are finished by comparing the label strings.
+ */
+public class composite_key {
+    static final int LABEL_SHIFT = record_store.MAX_LABEL_LENGTH * record_store.BITS_PER_CHAR - Integer.SIZE;
+    private static final long DROPPED_BITS = (1L << LABEL_SHIFT) - 1;
+    private static final long LOW_32 = 0xFFFFFFFFL;
+
+    enum Algorithm { QUICK, MERGE }
+
+    static long pack(int key, long label) {
+        return ((long) key << Integer.SIZE) | (label >>> LABEL_SHIFT);
+    }
+
+    static int key(long packed) {
+        return (int) (packed >> Integer.SIZE);
+    }
+
+    // The label bits kept in the long; the whole label when it has at most six characters
+    static long labelPrefix(long packed) {
+        return (packed & LOW_32) << LABEL_SHIFT;
+    }
+
+    static void sort(record_store store, Algorithm algorithm) {
+        int n = store.size();
+        if (n < 2) return;
+        int[] keys = store.keys;
+        long[] labels = store.labels;
+
+        long[] packed = new long[n];
+        boolean exact = true, text = false;
+        for (int i = 0; i < n; i++) {
+            exact &= (labels[i] & DROPPED_BITS) == 0;
+            text |= record_store.isExternal(labels[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            packed[i] = text ? packText(store, keys[i], labels[i]) : pack(keys[i], labels[i]);
+        }
+        long[] payload = exact && !text ? null : labels; // full labels only when the long cannot hold them
+
+        if (algorithm == Algorithm.QUICK) {
+            quickSort(packed, payload, 0, n - 1);
+        } else {
+            mergeSort(packed, payload, new long[n], payload != null ? new long[n] : null, 0, n - 1);
+        }
+        if (payload != null) {
+            breakTies(store, packed, payload, n);
+        }
+
+        for (int i = 0; i < n; i++) {
+            keys[i] = key(packed[i]);
+            if (payload == null) labels[i] = labelPrefix(packed[i]);
+        }
+    }
+
+    // Key and the first two label characters (16 bits each), in String order
+    private static long packText(record_store store, int key, long label) {
+        int first, second;
+        if (record_store.isExternal(label)) {
+            String text = store.labelText(label);
+            first = text.length() > 0 ? text.charAt(0) : 0;
+            second = text.length() > 1 ? text.charAt(1) : 0;
+        } else {
+            first = letter(label, 0);
+            second = letter(label, 1);
+        }
+        return ((long) key << Integer.SIZE) | ((long) first << Character.SIZE) | second;
+    }
+
+    private static int letter(long label, int position) {
+        int code = (int) ((label >>> record_store.shift(position)) & 0x1F);
+        return code == 0 ? 0 : 'a' + code - 1;
+    }
+
+    // Runs of equal longs share key and label prefix; order them by full label
+    private static void breakTies(record_store store, long[] packed, long[] labels, int n) {
+        long[] tmp = null;
+        for (int start = 0; start < n; ) {
+            int end = start + 1;
+            while (end < n && packed[end] == packed[start]) end++;
+            if (end - start > 1) {
+                if (tmp == null) tmp = new long[n];
+                sortLabels(store, labels, tmp, start, end);
+            }
+            start = end;
+        }
+    }
+
+    // Orders the store's labels like String.compareTo on their text
+    static int compareLabels(record_store store, long a, long b) {
+        if (a >= 0 && b >= 0) return Long.compare(a, b);
+        return store.labelText(a).compareTo(store.labelText(b));
+    }
+
+    // Merge sort of labels[lo, hi) by compareLabels, insertion sort for short runs
+    private static void sortLabels(record_store store, long[] labels, long[] tmp, int lo, int hi) {
+        if (hi - lo <= 16) {
+            for (int i = lo + 1; i < hi; i++) {
+                long label = labels[i];
+                int j = i - 1;
+                while (j >= lo && compareLabels(store, labels[j], label) > 0) {
+                    labels[j + 1] = labels[j];
+                    j--;
+                }
+                labels[j + 1] = label;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        sortLabels(store, labels, tmp, lo, mid);
+        sortLabels(store, labels, tmp, mid, hi);
+        System.arraycopy(labels, lo, tmp, lo, mid - lo);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+            labels[k++] = compareLabels(store, tmp[i], labels[j]) <= 0 ? tmp[i++] : labels[j++];
+        }
+        while (i < mid) labels[k++] = tmp[i++];
+    }
+
+    // intro_quick_sort on longs: median-of-3 pivot, three-way partitioning so runs of
+    // equal values finish in one pass, insertion sort for short ranges and heapsort
+    // once 2*log2(n) levels are used up, so sorted or repeated input stays O(n log n)
+    static void quickSort(long[] a, long[] payload, int low, int high) {
+        quickSort(a, payload, low, high, intro_quick_sort.depthLimit(high - low + 1));
+    }
+
+    private static void quickSort(long[] a, long[] payload, int low, int high, int depthLimit) {
+        while (high - low + 1 > intro_quick_sort.DEFAULT_CUTOFF) {
+            if (depthLimit-- == 0) {
+                heapSort(a, payload, low, high);
+                return;
+            }
+            long pivot = a[median3(a, low, low + (high - low) / 2, high)];
+
+            // [low, lt) < pivot, [lt, gt] == pivot, (gt, high] > pivot
+            int lt = low, i = low, gt = high;
+            while (i <= gt) {
+                if (a[i] < pivot) {
+                    swap(a, payload, lt++, i++);
+                } else if (a[i] > pivot) {
+                    swap(a, payload, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+
+            // Recurse into the smaller side so the stack stays O(log n)
+            if (lt - low < high - gt) {
+                quickSort(a, payload, low, lt - 1, depthLimit);
+                low = gt + 1;
+            } else {
+                quickSort(a, payload, gt + 1, high, depthLimit);
+                high = lt - 1;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && a[j - 1] > a[j]; j--) {
+                swap(a, payload, j - 1, j);
+            }
+        }
+    }
+
+    private static int median3(long[] a, int x, int y, int z) {
+        long ka = a[x], kb = a[y], kc = a[z];
+        if (ka < kb) {
+            return kb < kc ? y : (ka < kc ? z : x);
+        } else {
+            return ka < kc ? x : (kb < kc ? z : y);
+        }
+    }
+
+    private static void heapSort(long[] a, long[] payload, int low, int high) {
+        int n = high - low + 1;
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDown(a, payload, low, i, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            swap(a, payload, low, low + end);
+            siftDown(a, payload, low, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] a, long[] payload, int base, int i, int n) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) return;
+            if (child + 1 < n && a[base + child + 1] > a[base + child]) child++;
+            if (a[base + i] >= a[base + child]) return;
+            swap(a, payload, base + i, base + child);
+            i = child;
+        }
+    }
+
+    private static void swap(long[] a, long[] payload, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+        if (payload != null) {
+            t = payload[i];
+            payload[i] = payload[j];
+            payload[j] = t;
+        }
+    }
+
+    // merge_sort.mergeSort on longs, merging through one buffer allocated up front
+    static void mergeSort(long[] a, long[] payload, long[] tmp, long[] tmpPayload, int left, int right) {
+        if (left >= right) return;
+        int mid = left + (right - left) / 2;
+        mergeSort(a, payload, tmp, tmpPayload, left, mid);
+        mergeSort(a, payload, tmp, tmpPayload, mid + 1, right);
+        if (a[mid] <= a[mid + 1]) return; // already in order
+
+        int n1 = mid - left + 1;
+        System.arraycopy(a, left, tmp, left, n1);
+        if (payload != null) System.arraycopy(payload, left, tmpPayload, left, n1);
+        int i = left, j = mid + 1, k = left;
+        while (i <= mid && j <= right) {
+            if (tmp[i] <= a[j]) {
+                if (payload != null) payload[k] = tmpPayload[i];
+                a[k++] = tmp[i++];
+            } else {
+                if (payload != null) payload[k] = payload[j];
+                a[k++] = a[j++];
+            }
+        }
+        while (i <= mid) {
+            if (payload != null) payload[k] = tmpPayload[i];
+            a[k++] = tmp[i++];
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Checks quick_sort --composite and merge_sort --composite against merge_sort
+ * followed by sorting every key's labels as strings. Both must write the same rows
+ * as that reference, and so the same as each other, whatever order ties had in the
+ * input. Covers labels that fit the long completely, longer labels that share
+ * their first six letters, labels from the side table and sorted input:
+ *
+ *   java composite_key_check [rows]
+ */
+public class composite_key_check {
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store random = sort_check.generate(n);
+        String[] names = {"1-12 letters", "at most 6 letters", "shared 6-letter prefix", "side-table labels",
+                "sorted"};
+        record_store[] inputs = {random, relabel(random, 0), relabel(random, 1), relabel(random, 2),
+                sort_check.reference(random)};
+
+        for (int i = 0; i < inputs.length; i++) {
+            record_store expected = byKeyAndLabel(inputs[i]);
+            for (composite_key.Algorithm algorithm : composite_key.Algorithm.values()) {
+                record_store actual = sort_check.copy(inputs[i]);
+                composite_key.sort(actual, algorithm);
+                expectSameText("composite " + algorithm.name().toLowerCase() + " sort, " + names[i], expected, actual);
+            }
+        }
+    }
+
+    // 0: labels cut to six letters, 1: "abcdef" and the first letters of the label,
+    // 2: every fifth label replaced by text outside a..z
+    private static record_store relabel(record_store input, int mode) {
+        record_store rows = sort_check.copy(input);
+        for (int i = 0; i < rows.size(); i++) {
+            String label = rows.labelText(rows.labels[i]);
+            if (mode == 0) {
+                label = label.substring(0, Math.min(label.length(), 6));
+            } else if (mode == 1) {
+                label = "abcdef" + label.substring(0, Math.min(label.length(), 6));
+            } else if (i % 5 == 0) {
+                label = (i % 2 == 0 ? "Label " : "\u00e9t\u00e9") + label;
+            }
+            rows.labels[i] = rows.label(label);
+        }
+        return rows;
+    }
+
+    // merge_sort by key, then the labels of every key in string order
+    private static record_store byKeyAndLabel(record_store input) {
+        record_store rows = sort_check.reference(input);
+        long[] tmp = new long[rows.size()];
+        for (int start = 0; start < rows.size(); ) {
+            int end = start + 1;
+            while (end < rows.size() && rows.keys[end] == rows.keys[start]) end++;
+            sortLabels(rows, rows.labels, tmp, start, end);
+            start = end;
+        }
+        return rows;
+    }
+
+    // Merge sort of labels[lo, hi) by composite_key.compareLabels
+    private static void sortLabels(record_store rows, long[] labels, long[] tmp, int lo, int hi) {
+        if (hi - lo < 2) return;
+        int mid = (lo + hi) >>> 1;
+        sortLabels(rows, labels, tmp, lo, mid);
+        sortLabels(rows, labels, tmp, mid, hi);
+        System.arraycopy(labels, lo, tmp, lo, hi - lo);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) {
+            labels[k++] = composite_key.compareLabels(rows, tmp[i], tmp[j]) <= 0 ? tmp[i++] : tmp[j++];
+        }
+        while (i < mid) labels[k++] = tmp[i++];
+        while (j < hi) labels[k++] = tmp[j++];
+    }
+
+    // Same rows as the CSV writes them; side-table labels with equal text compare equal
+    private static void expectSameText(String what, record_store expected, record_store actual) {
+        if (expected.size() != actual.size()) {
+            sort_check.fail(what, "expected " + expected.size() + " rows, got " + actual.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.format(i).equals(actual.format(i))) {
+                sort_check.fail(what, "row " + (i + 1) + ": expected " + expected.format(i) + ", got "
+                        + actual.format(i));
+            }
+        }
+        System.out.println("OK " + what);
+    }
+}
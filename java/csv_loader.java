@@ -0,0 +1,385 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Loads "number,label" CSV files into a record_store without going through
+ * readLine/split. The file is memory mapped in chunks that end on a newline, each
+ * chunk's lines are counted and then parsed straight from the bytes in parallel.
+ * Binary datasets (see column_file) are recognised by their magic and mapped as is.
+ *
+ * Blank lines are skipped. Lines without a valid "number," prefix are skipped
+ * too, but counted and reported on stderr with the line number of the first one.
+ * Every label is kept: lowercase labels of up to 12 characters are packed, any
+ * other text goes to the side table of the returned record_store unchanged.
+ */
+public class csv_loader {
+    private static final long CHUNK_SIZE = 64L << 20; // 64 MB per mapped chunk
+
+    // parseLine results
+    private static final int ROW = 1, BLANK = 0, INVALID = -1;
+
+    // Loads every valid row of the file
+    static record_store load(File file) throws IOException {
+        if (column_file.isColumnFile(file)) {
+            return column_file.read(file);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            int chunks = bounds.length - 1;
+
+            // First pass: count lines per chunk so every chunk knows where to write
+            long[] lineCounts = new long[chunks];
+            forEachChunk(chunks, c -> lineCounts[c] = countLines(map(channel, bounds, c)));
+
+            long totalLines = 0;
+            int[] offsets = new int[chunks];
+            for (int c = 0; c < chunks; c++) {
+                offsets[c] = (int) totalLines;
+                totalLines += lineCounts[c];
+                if (totalLines > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Too many rows in " + file + ": " + totalLines);
+                }
+            }
+
+            // Second pass: parse each chunk into its own slice of the shared arrays; labels
+            // that do not pack go to a side table per chunk, so the chunks share nothing
+            int[] keys = new int[(int) totalLines];
+            long[] labels = new long[(int) totalLines];
+            record_store[] sideLabels = new record_store[chunks];
+            int[] parsed = new int[chunks];
+            long[] invalid = new long[chunks];
+            long[] firstInvalid = new long[chunks]; // line number within the chunk, 0-based
+            forEachChunk(chunks, c -> {
+                ByteBuffer buf = map(channel, bounds, c);
+                sideLabels[c] = new record_store(0);
+                long[] stats = parseLines(buf, keys, labels, offsets[c], sideLabels[c]);
+                parsed[c] = (int) stats[0];
+                invalid[c] = stats[1];
+                firstInvalid[c] = stats[2];
+            });
+
+            // Close the gaps left by blank or invalid lines and move the side tables of
+            // the chunks into the store, shifting their handles past the earlier chunks'
+            record_store store = new record_store(keys, labels, 0);
+            for (int c = 0; c < chunks; c++) {
+                if (offsets[c] != store.size) {
+                    System.arraycopy(keys, offsets[c], keys, store.size, parsed[c]);
+                    System.arraycopy(labels, offsets[c], labels, store.size, parsed[c]);
+                }
+                int base = store.appendSideLabels(sideLabels[c]);
+                if (base > 0) {
+                    for (int i = store.size; i < store.size + parsed[c]; i++) {
+                        if (record_store.isExternal(labels[i])) labels[i] += base;
+                    }
+                }
+                store.size += parsed[c];
+            }
+
+            long invalidLines = 0, firstLine = -1;
+            for (int c = 0; c < chunks; c++) {
+                if (invalid[c] > 0 && firstLine < 0) firstLine = offsets[c] + firstInvalid[c] + 1;
+                invalidLines += invalid[c];
+            }
+            reportInvalid(file, invalidLines, firstLine);
+            return store;
+        }
+    }
+
+    // Loads the rows whose 1-based line numbers fall in [startRow, endRow]
+    static record_store loadRows(File file, long startRow, long endRow) throws IOException {
+        if (column_file.isColumnFile(file)) {
+            return column_file.readRows(file, startRow, endRow);
+        }
+        record_store store = new record_store(16);
+        long invalidLines = 0, firstLine = -1;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            long lineNum = 0;
+
+            for (int c = 0; c < bounds.length - 1 && lineNum < endRow; c++) {
+                ByteBuffer buf = map(channel, bounds, c);
+                int limit = buf.limit();
+                int pos = 0;
+                while (pos < limit && lineNum < endRow) {
+                    int end = lineEnd(buf, pos, limit);
+                    lineNum++;
+                    if (lineNum >= startRow) {
+                        store.ensureCapacity(store.size + 1);
+                        int result = parseLine(buf, pos, end, store.keys, store.labels, store.size, store);
+                        if (result == ROW) {
+                            store.size++;
+                        } else if (result == INVALID && invalidLines++ == 0) {
+                            firstLine = lineNum;
+                        }
+                    }
+                    pos = end + 1;
+                }
+            }
+        }
+        reportInvalid(file, invalidLines, firstLine);
+        return store;
+    }
+
+    private static void reportInvalid(File file, long invalidLines, long firstLine) {
+        if (invalidLines > 0) {
+            System.err.println("Skipped " + invalidLines + " invalid lines in " + file + " (first at line "
+                    + firstLine + ")");
+        }
+    }
+
+    // Streams rows from a file in order, one mapped chunk at a time
+    static final class RowReader implements Closeable {
+        private final File file;
+        private final FileChannel channel;
+        private final long[] bounds;
+        private int chunk = -1;
+        private ByteBuffer buf;
+        private int pos;
+        private long lastRowOffset = -1;
+        private long lineNum;
+        private long invalidLines;
+        private long firstInvalidLine = -1;
+
+        RowReader(File file) throws IOException {
+            if (column_file.isColumnFile(file)) {
+                throw new IOException(file + " is a binary dataset; convert it with column_file first");
+            }
+            this.file = file;
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            bounds = chunkBounds(channel);
+        }
+
+        // Appends up to maxRows rows to the store; returns the number added, 0 at end of file
+        int read(record_store store, int maxRows) {
+            int added = 0;
+            while (added < maxRows && nextChunkIfNeeded()) {
+                int end = lineEnd(buf, pos, buf.limit());
+                store.ensureCapacity(store.size + 1);
+                lineNum++;
+                int result = parseLine(buf, pos, end, store.keys, store.labels, store.size, store);
+                if (result == ROW) {
+                    store.size++;
+                    added++;
+                    lastRowOffset = bounds[chunk] + pos;
+                } else if (result == INVALID && invalidLines++ == 0) {
+                    firstInvalidLine = lineNum;
+                }
+                pos = end + 1;
+            }
+            return added;
+        }
+
+        // Stores the keys of up to maxRows rows at keys[at..] and the byte offset of each
+        // row's line at offsets[at..], without parsing the labels; returns the number stored
+        int readKeys(int[] keys, long[] offsets, int at, int maxRows) {
+            int added = 0;
+            while (added < maxRows && nextChunkIfNeeded()) {
+                int end = lineEnd(buf, pos, buf.limit());
+                lineNum++;
+                int result = parseLine(buf, pos, end, keys, null, at + added, null);
+                if (result == ROW) {
+                    lastRowOffset = bounds[chunk] + pos;
+                    offsets[at + added++] = lastRowOffset;
+                } else if (result == INVALID && invalidLines++ == 0) {
+                    firstInvalidLine = lineNum;
+                }
+                pos = end + 1;
+            }
+            return added;
+        }
+
+        // Maps the next chunk once the current one is used up; false at end of file
+        private boolean nextChunkIfNeeded() {
+            if (buf != null && pos < buf.limit()) return true;
+            if (chunk + 1 >= bounds.length - 1) return false;
+            chunk++;
+            buf = map(channel, bounds, chunk);
+            pos = 0;
+            return true;
+        }
+
+        // Byte offset in the file of the line the last added row came from
+        long lastRowOffset() {
+            return lastRowOffset;
+        }
+
+        // Lines read so far that were neither rows nor blank
+        long invalidLines() {
+            return invalidLines;
+        }
+
+        long firstInvalidLine() {
+            return firstInvalidLine;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reportInvalid(file, invalidLines, firstInvalidLine);
+            invalidLines = 0;
+            buf = null;
+            channel.close();
+        }
+    }
+
+    // Splits the file into chunks of about CHUNK_SIZE bytes, each ending right after a newline
+    private static long[] chunkBounds(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        int maxChunks = (int) (fileSize / CHUNK_SIZE) + 2;
+        long[] bounds = new long[maxChunks];
+        int count = 0;
+        long start = 0;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+
+        while (start < fileSize) {
+            bounds[count++] = start;
+            long end = start + CHUNK_SIZE;
+            if (end >= fileSize) {
+                start = fileSize;
+                break;
+            }
+            start = nextLineStart(channel, end, probe);
+        }
+        bounds[count++] = start;
+
+        long[] result = new long[count];
+        System.arraycopy(bounds, 0, result, 0, count);
+        return result;
+    }
+
+    private static long nextLineStart(FileChannel channel, long pos, ByteBuffer probe) throws IOException {
+        long fileSize = channel.size();
+        while (pos < fileSize) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return fileSize;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long[] bounds, int chunk) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, bounds[chunk], bounds[chunk + 1] - bounds[chunk]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long countLines(ByteBuffer buf) {
+        int limit = buf.limit();
+        long lines = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buf.get(i) == '\n') lines++;
+        }
+        if (limit > 0 && buf.get(limit - 1) != '\n') lines++;
+        return lines;
+    }
+
+    private static int lineEnd(ByteBuffer buf, int pos, int limit) {
+        while (pos < limit && buf.get(pos) != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    // Parses all lines of one chunk into keys/labels starting at 'out'; returns
+    // {rows written, invalid lines, 0-based line of the first invalid one or -1}
+    private static long[] parseLines(ByteBuffer buf, int[] keys, long[] labels, int out, record_store sideLabels) {
+        int limit = buf.limit();
+        int pos = 0;
+        long line = 0;
+        long[] stats = {0, 0, -1};
+        while (pos < limit) {
+            int end = lineEnd(buf, pos, limit);
+            int result = parseLine(buf, pos, end, keys, labels, out + (int) stats[0], sideLabels);
+            if (result == ROW) {
+                stats[0]++;
+            } else if (result == INVALID && stats[1]++ == 0) {
+                stats[2] = line;
+            }
+            line++;
+            pos = end + 1;
+        }
+        return stats;
+    }
+
+    // Parses one "number,label" line in [start, end); quotes, spaces and '\r' around
+    // the fields are ignored; labels that do not pack go to the side table of sideLabels.
+    // Without a labels array only the key is stored. Returns ROW, BLANK or INVALID
+    private static int parseLine(ByteBuffer buf, int start, int end, int[] keys, long[] labels, int index,
+            record_store sideLabels) {
+        int pos = start;
+        while (pos < end && isPadding(buf.get(pos))) pos++;
+        if (pos == end) return BLANK;
+
+        boolean negative = false;
+        if (pos < end && buf.get(pos) == '-') {
+            negative = true;
+            pos++;
+        }
+
+        long number = 0;
+        int digits = 0;
+        while (pos < end) {
+            byte b = buf.get(pos);
+            if (b < '0' || b > '9') break;
+            number = number * 10 + (b - '0');
+            if (number > Integer.MAX_VALUE + 1L) return INVALID;
+            digits++;
+            pos++;
+        }
+        if (negative) number = -number;
+        if (digits == 0 || number > Integer.MAX_VALUE || number < Integer.MIN_VALUE) return INVALID;
+
+        while (pos < end && isPadding(buf.get(pos))) pos++;
+        if (pos >= end || buf.get(pos) != ',') return INVALID;
+        pos++;
+
+        while (pos < end && isPadding(buf.get(pos))) pos++;
+        int labelEnd = end;
+        while (labelEnd > pos && isPadding(buf.get(labelEnd - 1))) labelEnd--;
+
+        keys[index] = (int) number;
+        if (labels != null) labels[index] = packLabel(buf, pos, labelEnd, sideLabels);
+        return ROW;
+    }
+
+    // Packs the label bytes in [start, end), or keeps the text in the store's side table
+    private static long packLabel(ByteBuffer buf, int start, int end, record_store sideLabels) {
+        long label = 0;
+        boolean packable = end - start <= record_store.MAX_LABEL_LENGTH;
+        for (int i = 0; packable && start + i < end; i++) {
+            byte b = buf.get(start + i);
+            packable = b >= 'a' && b <= 'z';
+            label |= (long) (b - 'a' + 1) << record_store.shift(i);
+        }
+        if (packable) return label;
+        byte[] text = new byte[end - start];
+        buf.get(start, text);
+        return sideLabels.addSideLabel(new String(text, StandardCharsets.UTF_8));
+    }
+
+    private static boolean isPadding(byte b) {
+        return b == ' ' || b == '"' || b == '\r' || b == '\t';
+    }
+
+    // Runs the task for every chunk on the common fork/join pool
+    private static void forEachChunk(int chunks, IntConsumer task) throws IOException {
+        try {
+            IntStream.range(0, chunks).parallel().forEach(task);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
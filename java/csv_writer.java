@@ -0,0 +1,194 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes "number,label" rows without building a String per row. Keys and packed
+ * labels are formatted straight into one of a few reusable byte buffers; full
+ * buffers are handed to a background thread that writes them to a FileChannel,
+ * so formatting the next buffer overlaps with the disk write of the previous one.
+ * Labels kept in a record_store's side table are written as their original text.
+ */
+public class csv_writer implements Closeable {
+    private static final int BUFFER_SIZE = 4 << 20;
+    private static final int BUFFERS = 3;
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_ROW_BYTES = 11 + 1 + record_store.MAX_LABEL_LENGTH + NEWLINE.length;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final Thread writerThread;
+    private volatile IOException failure;
+    private ByteBuffer current;
+    private byte[] out;
+    private int pos;
+    private boolean closed;
+
+    csv_writer(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(ByteBuffer.allocate(BUFFER_SIZE));
+        }
+        current = free.remove();
+        out = current.array();
+        writerThread = new Thread(this::drain, "csv_writer " + file.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Writes all rows of the store to the file
+    static void write(record_store store, String filename) throws IOException {
+        try (csv_writer writer = new csv_writer(new File(filename))) {
+            int[] keys = store.keys;
+            long[] labels = store.labels;
+            for (int i = 0; i < store.size(); i++) {
+                writer.write(keys[i], labels[i], store);
+            }
+        }
+    }
+
+    // Writes a row whose label is packed
+    void write(int key, long label) throws IOException {
+        write(key, label, null);
+    }
+
+    // Writes a row of the source store; its side table holds the label if it is not packed
+    void write(int key, long label, record_store source) throws IOException {
+        if (record_store.isExternal(label)) {
+            if (source == null) {
+                throw new IOException("Row with key " + key + " has a side-table label but no store to read it from");
+            }
+            writeExternal(key, source.labelText(label));
+            return;
+        }
+        if (pos > BUFFER_SIZE - MAX_ROW_BYTES) {
+            handOff();
+        }
+        byte[] b = out;
+        int p = pos;
+
+        // Digits are produced backwards into their final place
+        long value = key;
+        if (value < 0) {
+            b[p++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) digits++;
+        p += digits;
+        for (int i = p - 1; i >= p - digits; i--) {
+            b[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+
+        b[p++] = ',';
+        for (int i = 0; i < record_store.MAX_LABEL_LENGTH; i++) {
+            int code = (int) ((label >>> record_store.shift(i)) & 0x1F);
+            if (code == 0) break;
+            b[p++] = (byte) ('a' + code - 1);
+        }
+        for (byte c : NEWLINE) {
+            b[p++] = c;
+        }
+        pos = p;
+    }
+
+    // Rows whose label is not packed: the label's UTF-8 bytes are copied as they are
+    private void writeExternal(int key, String label) throws IOException {
+        byte[] text = label.getBytes(StandardCharsets.UTF_8);
+        int rowBytes = 12 + text.length + NEWLINE.length;
+        if (rowBytes > BUFFER_SIZE) {
+            throw new IOException("Label too long to write: " + text.length + " bytes");
+        }
+        if (pos > BUFFER_SIZE - rowBytes) {
+            handOff();
+        }
+        byte[] digits = Integer.toString(key).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(digits, 0, out, pos, digits.length);
+        pos += digits.length;
+        out[pos++] = ',';
+        System.arraycopy(text, 0, out, pos, text.length);
+        pos += text.length;
+        for (byte c : NEWLINE) {
+            out[pos++] = c;
+        }
+    }
+
+    // Queues the current buffer for writing and continues in a free one
+    private void handOff() throws IOException {
+        checkFailure();
+        current.position(0).limit(pos);
+        try {
+            full.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing");
+        }
+        out = current.array();
+        pos = 0;
+    }
+
+    // Background thread: writes queued buffers in order and returns them to the free list
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer buf = full.take();
+                if (buf == END) return;
+                try {
+                    if (failure == null) {
+                        while (buf.hasRemaining()) {
+                            channel.write(buf);
+                        }
+                    }
+                } catch (IOException e) {
+                    failure = e; // keep recycling buffers so the producer never blocks
+                }
+                buf.clear();
+                free.put(buf);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Error writing output: " + failure.getMessage(), failure);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        IOException error = null;
+        try {
+            if (pos > 0) {
+                handOff();
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        // The full queue has room for every buffer plus END, so this never blocks and the
+        // writer thread finishes even when the last hand-off failed
+        full.offer(END);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (error == null) error = new InterruptedIOException("Interrupted while closing output");
+        } finally {
+            channel.close();
+        }
+        checkFailure(); // a failed write is the first thing that went wrong
+        if (error != null) throw error;
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Round-trip check for csv_writer. Its output must be byte for byte the
+ * "key,label" lines String formatting gives for the same rows, and csv_loader must
+ * read it back as the same keys and label texts. Keys cover 0, both signs and both
+ * ends of the int range; labels cover the empty label, 1 to 12 letters and
+ * side-table labels with capitals, commas and UTF-8. The default 500000 rows span
+ * several 4 MB buffers, and labels of a few MB force a hand-off of their own; a
+ * label longer than a buffer and a side-table label without its store are refused:
+ *
+ *   java csv_writer_check [rows]
+ */
+public class csv_writer_check {
+    private static final int DEFAULT_ROWS = 500_000;
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, DEFAULT_ROWS);
+        try {
+            expectRoundTrip("no rows", new record_store(1));
+
+            // Every edge key with every label, so both the packed and the side-table path see each key
+            record_store edges = new record_store(128);
+            int[] keys = {0, 1, -1, 9, 10, -10, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1};
+            String[] labels = {"", "a", "zzzzzzzzzzzz", "abcdefghijklm", "Capital", "with,commas",
+                    "\u00e9 \u00f6 \u2713", "label with spaces", "x"};
+            for (int key : keys) {
+                for (String label : labels) edges.add(key, label);
+            }
+            expectRoundTrip("edge keys and labels", edges);
+
+            // Side-table labels between packed ones, so rows switch between both paths
+            record_store rows = sort_check.generate(n, Integer.MAX_VALUE, sort_check.SEED);
+            for (int i = 0; i < n; i += 11) {
+                rows.keys[i] = -rows.keys[i];
+                if (i % 3 == 0) rows.labels[i] = rows.label("Row " + i + ", \u00fcn\u00efcode");
+            }
+            expectRoundTrip(n + " rows", rows);
+
+            // Labels of 1 and 3 MB: each needs a buffer of its own
+            record_store large = new record_store(8);
+            large.add(1, "a");
+            large.add(2, "L" + "x".repeat(1 << 20));
+            large.add(3, "b");
+            large.add(4, "M" + "y".repeat(3 << 20));
+            large.add(5, "c");
+            expectRoundTrip("labels of several MB", large);
+
+            record_store tooLong = new record_store(1);
+            tooLong.add(1, "N" + "z".repeat(4 << 20));
+            expectRefused("label longer than a buffer", tooLong, tooLong);
+            record_store side = new record_store(1);
+            side.add(1, "Capital");
+            expectRefused("side-table label without its store", side, null);
+        } catch (IOException e) {
+            sort_check.fail("csv writer", e.getMessage());
+        }
+    }
+
+    // Writes the rows, compares the bytes with formatted lines and loads them back
+    private static void expectRoundTrip(String what, record_store rows) throws IOException {
+        File file = sort_check.writeCSV(rows, "csv_writer_check.csv");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < rows.size(); i++) {
+            String line = rows.keys[i] + "," + rows.labelText(rows.labels[i]) + System.lineSeparator();
+            expected.write(line.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] actual = Files.readAllBytes(file.toPath());
+        byte[] want = expected.toByteArray();
+        for (int i = 0; i < Math.min(want.length, actual.length); i++) {
+            if (want[i] != actual[i]) {
+                sort_check.fail(what, "byte " + i + " is " + actual[i] + ", expected " + want[i]);
+            }
+        }
+        if (want.length != actual.length) {
+            sort_check.fail(what, "wrote " + actual.length + " bytes, expected " + want.length);
+        }
+
+        if (rows.size() > 0) {
+            record_store loaded = csv_loader.load(file);
+            if (loaded.size() != rows.size()) {
+                sort_check.fail(what, "read back " + loaded.size() + " rows, expected " + rows.size());
+            }
+            for (int i = 0; i < rows.size(); i++) {
+                if (loaded.keys[i] != rows.keys[i]
+                        || !loaded.labelText(loaded.labels[i]).equals(rows.labelText(rows.labels[i]))) {
+                    sort_check.fail(what, "row " + (i + 1) + " reads back as " + loaded.format(i) + ", expected "
+                            + rows.format(i));
+                }
+            }
+        }
+        file.delete();
+        System.out.println("OK " + what + ", " + want.length + " bytes");
+    }
+
+    // The first row, written with the given store as the label source, must fail
+    private static void expectRefused(String what, record_store rows, record_store source) {
+        File file = new File("../temp", "csv_writer_check_refused.csv");
+        file.deleteOnExit();
+        try (csv_writer writer = new csv_writer(file)) {
+            writer.write(rows.keys[0], rows.labels[0], source);
+            sort_check.fail(what, "it was written");
+        } catch (IOException e) {
+            System.out.println("OK " + what + " is refused");
+        }
+        file.delete();
+    }
+}
@@ -1,59 +1,218 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Writes n rows of "key,label". Row i gets the key 1 + P(i), where P is a keyed
+ * permutation of [0, MAX_NUMBER) (a Feistel network over 32 bits, cycle-walked
+ * back into the range), so keys are unique without remembering the ones already
+ * used. Rows are generated in shards on all cores, each shard with its own split
+ * of the seeded SplittableRandom for the labels, and the shards are written in
+ * order through a FileChannel. The same seed always produces the same file.
+ * With --binary the dataset is written in the column_file format instead of CSV,
+ * each shard's keys and labels going straight to their place in the two columns.
+ */
 public class dataset_generator {
     private static final int STRING_LENGTH = 5;
     private static final String CHARACTERS = "abcdefghijklmnopqrstuvwxyz";
     private static final long MAX_NUMBER = 2_147_483_647L; // 2^31 - 1 (max 32-bit positive int)
+    private static final int FEISTEL_ROUNDS = 6;
+    private static final int SHARD_ROWS = 1 << 18;
+    private static final int MAX_ROW_BYTES = 10 + 1 + STRING_LENGTH + 1; // digits, comma, label, newline
+    private static final long PROGRESS_ROWS = 10_000_000;
 
-    private static String generateRandomString(Random random) {
-        StringBuilder sb = new StringBuilder(STRING_LENGTH);
-        for (int i = 0; i < STRING_LENGTH; i++) {
-            sb.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+    private static final byte[] LETTERS = CHARACTERS.getBytes();
+
+    // Maps i in [0, MAX_NUMBER) to a distinct value in the same range
+    static long permute(int[] roundKeys, long i) {
+        long x = i;
+        do {
+            x = feistel(roundKeys, (int) x) & 0xFFFFFFFFL;
+        } while (x >= MAX_NUMBER); // cycle walking: values outside the range are permuted again
+        return x;
+    }
+
+    // Balanced Feistel network on 16-bit halves, a bijection of all 32-bit values
+    private static int feistel(int[] roundKeys, int x) {
+        int left = x >>> 16, right = x & 0xFFFF;
+        for (int key : roundKeys) {
+            int next = left ^ (round(right, key) & 0xFFFF);
+            left = right;
+            right = next;
+        }
+        return (left << 16) | right;
+    }
+
+    private static int round(int half, int key) {
+        int h = (half ^ key) * 0x9E3779B1;
+        h ^= h >>> 15;
+        h *= 0x85EBCA77;
+        return h ^ (h >>> 13);
+    }
+
+    static int[] roundKeys(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] keys = new int[FEISTEL_ROUNDS];
+        for (int r = 0; r < keys.length; r++) {
+            keys[r] = random.nextInt();
         }
-        return sb.toString();
+        return keys;
     }
 
-    public static void generateDataset(long n, String filename) throws IOException {
+    public static void generateDataset(long n, String filename, long seed, int threads, boolean binary)
+            throws IOException {
         if (n <= 0) {
             throw new IllegalArgumentException("Dataset size must be positive");
         }
+        if (n > MAX_NUMBER) {
+            throw new IllegalArgumentException("Dataset size must be at most " + MAX_NUMBER + " to keep keys unique");
+        }
+
+        int[] roundKeys = roundKeys(seed);
+        SplittableRandom labelRandom = new SplittableRandom(~seed);
+        long shards = (n + SHARD_ROWS - 1) / SHARD_ROWS;
+
+        // Workers fill pooled buffers; the writer takes shards back in order and recycles them
+        int inFlight = threads * 2;
+        BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(inFlight);
+        for (int b = 0; b < inFlight; b++) {
+            buffers.add(ByteBuffer.allocateDirect(SHARD_ROWS * MAX_ROW_BYTES).order(ByteOrder.LITTLE_ENDIAN));
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try (FileChannel out = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (binary) {
+                column_file.writeFully(out, column_file.header(n, seed), 0);
+            }
+
+            ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<>();
+            long nextShard = 0, written = 0, nextReport = 0;
+            while (written < n) {
+                while (nextShard < shards && pending.size() < inFlight) {
+                    long from = nextShard * SHARD_ROWS;
+                    long to = Math.min(n, from + SHARD_ROWS);
+                    SplittableRandom random = labelRandom.split(); // split in shard order for reproducibility
+                    pending.add(workers.submit(() -> binary
+                            ? fillColumns(buffers.take(), roundKeys, random, from, to)
+                            : fillShard(buffers.take(), roundKeys, random, from, to)));
+                    nextShard++;
+                }
+
+                ByteBuffer shard = pending.remove().get();
+                long rows = Math.min(n - written, SHARD_ROWS);
+                if (binary) {
+                    // Keys then labels of the shard, each written to its slice of the column
+                    shard.limit((int) rows * Integer.BYTES);
+                    column_file.writeFully(out, shard, column_file.keysOffset() + written * Integer.BYTES);
+                    shard.limit((int) rows * (Integer.BYTES + Long.BYTES));
+                    column_file.writeFully(out, shard, column_file.labelsOffset(n) + written * Long.BYTES);
+                } else {
+                    while (shard.hasRemaining()) {
+                        out.write(shard);
+                    }
+                }
+                shard.clear();
+                buffers.add(shard);
+                written += rows;
 
-        Random random = new Random();
-        
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            for (long i = 0; i < n; i++) {
-                // Generate completely random number between 1 and MAX_NUMBER
-                long number = 1 + random.nextLong(MAX_NUMBER);
-                writer.write(number + "," + generateRandomString(random));
-                writer.newLine();
-                
                 // Progress reporting
-                if (i % 10_000_000 == 0) {
+                if (written >= nextReport || written == n) {
                     System.out.printf("Generated %,d of %,d entries (%.1f%%)%n",
-                            i, n, (i * 100.0 / n));
+                            written, n, (written * 100.0 / n));
+                    nextReport += PROGRESS_ROWS;
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Generation failed: " + e.getCause(), e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // Formats rows [from, to) into the buffer and flips it for writing
+    private static ByteBuffer fillShard(ByteBuffer buffer, int[] roundKeys, SplittableRandom random,
+                                        long from, long to) {
+        byte[] digits = new byte[10];
+        for (long i = from; i < to; i++) {
+            long number = 1 + permute(roundKeys, i);
+            int d = digits.length;
+            do {
+                digits[--d] = (byte) ('0' + number % 10);
+                number /= 10;
+            } while (number != 0);
+            buffer.put(digits, d, digits.length - d);
+            buffer.put((byte) ',');
+            for (int c = 0; c < STRING_LENGTH; c++) {
+                buffer.put(LETTERS[random.nextInt(LETTERS.length)]);
+            }
+            buffer.put((byte) '\n');
         }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Same rows as fillShard, as a key column followed by a packed label column
+    private static ByteBuffer fillColumns(ByteBuffer buffer, int[] roundKeys, SplittableRandom random,
+                                          long from, long to) {
+        int rows = (int) (to - from);
+        int labelsAt = rows * Integer.BYTES;
+        for (int r = 0; r < rows; r++) {
+            buffer.putInt(r * Integer.BYTES, (int) (1 + permute(roundKeys, from + r)));
+            long label = 0;
+            for (int c = 0; c < STRING_LENGTH; c++) {
+                label |= (long) (1 + random.nextInt(LETTERS.length)) << record_store.shift(c);
+            }
+            buffer.putLong(labelsAt + r * Long.BYTES, label);
+        }
+        buffer.limit(labelsAt + rows * Long.BYTES);
+        return buffer;
     }
 
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java dataset_generator <size>");
+        if (args.length < 1 || args.length > 4) {
+            System.out.println("Usage: java dataset_generator <size> [--seed=<seed>] [--threads=<threads>] [--binary]");
             return;
         }
-        
+
         try {
             long size = Long.parseLong(args[0]);
-            String filename = "../datasets/dataset_" + size + ".csv";
-            
-            System.out.println("Generating random dataset with " + size + " entries...");
-            generateDataset(size, filename);
+            long seed = System.nanoTime();
+            int threads = Runtime.getRuntime().availableProcessors();
+            boolean binary = false;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("--seed=")) {
+                    seed = Long.parseLong(args[i].substring("--seed=".length()));
+                } else if (args[i].startsWith("--threads=")) {
+                    threads = Integer.parseInt(args[i].substring("--threads=".length()));
+                    if (threads < 1) throw new IllegalArgumentException("Thread count must be positive");
+                } else if (args[i].equals("--binary")) {
+                    binary = true;
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            String filename = "../datasets/dataset_" + size + (binary ? column_file.EXTENSION : ".csv");
+
+            System.out.println("Generating random dataset with " + size + " entries (seed " + seed + ")...");
+            generateDataset(size, filename, seed, threads, binary);
             System.out.println("Dataset successfully generated: " + filename);
         } catch (NumberFormatException e) {
-            System.err.println("Invalid size: must be a positive integer");
+            System.err.println("Invalid number: " + e.getMessage());
         } catch (IllegalArgumentException e) {
             System.err.println(e.getMessage());
         } catch (IOException e) {
@@ -0,0 +1,83 @@
+import java.io.*;
+import java.nio.file.Files;
+
+/**
+ * Checks that dataset_generator is reproducible and keeps keys unique. Each size
+ * is generated with the same seed on 1 and on 4 threads, as CSV and with --binary;
+ * the files of one format must be byte for byte the same, the CSV and binary
+ * datasets must hold the same rows, and after a merge_sort every key must be in
+ * [1, 2^31 - 1] and differ from its neighbour. Sizes cover one row, a partial
+ * shard and several shards with a partial last one (default 600000 rows):
+ *
+ *   java dataset_generator_check [rows]
+ */
+public class dataset_generator_check {
+    private static final int DEFAULT_ROWS = 600_000;
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, DEFAULT_ROWS);
+        new File("../temp").mkdirs();
+        try {
+            for (int size : new int[] {1, 1000, n}) {
+                record_store csv = expectReproducible(size, false);
+                record_store binary = expectReproducible(size, true);
+                sort_check.expectIdentical(size + " rows, CSV and binary datasets", csv, binary);
+                expectUniqueKeys(size + " rows", csv);
+            }
+            File first = generate(1000, 1, false, sort_check.SEED);
+            File other = generate(1000, 1, false, sort_check.SEED + 1);
+            if (Files.mismatch(first.toPath(), other.toPath()) < 0) {
+                sort_check.fail("another seed", "it generated the same file");
+            }
+            System.out.println("OK another seed generates another dataset");
+        } catch (IOException e) {
+            sort_check.fail("dataset generator", e.getMessage());
+        }
+    }
+
+    // Generates the dataset on 1 and 4 threads, compares the files and loads one of them
+    private static record_store expectReproducible(int n, boolean binary) throws IOException {
+        String what = n + " rows, " + (binary ? "binary" : "CSV") + ", 1 and 4 threads";
+        File one = generate(n, 1, binary, sort_check.SEED);
+        File four = generate(n, 4, binary, sort_check.SEED);
+        long at = Files.mismatch(one.toPath(), four.toPath());
+        if (at >= 0) {
+            sort_check.fail(what, "the files differ at byte " + at + " (" + one.length() + " and "
+                    + four.length() + " bytes)");
+        }
+        record_store rows = csv_loader.load(one);
+        if (rows.size() != n) {
+            sort_check.fail(what, "the dataset holds " + rows.size() + " rows, expected " + n);
+        }
+        System.out.println("OK " + what);
+        return rows;
+    }
+
+    private static void expectUniqueKeys(String what, record_store rows) {
+        record_store sorted = sort_check.reference(rows);
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.keys[i] < 1) {
+                sort_check.fail(what, "key " + sorted.keys[i] + " is out of range");
+            }
+            if (i > 0 && sorted.keys[i] == sorted.keys[i - 1]) {
+                sort_check.fail(what, "key " + sorted.keys[i] + " appears twice");
+            }
+        }
+        System.out.println("OK " + what + ", every key distinct");
+    }
+
+    // One dataset under ../temp, removed when the JVM exits
+    private static File generate(int n, int threads, boolean binary, long seed) throws IOException {
+        File file = new File("../temp", "dataset_generator_check_" + n + "_" + threads + "_" + seed
+                + (binary ? column_file.EXTENSION : ".csv"));
+        file.deleteOnExit();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // progress lines
+        try {
+            dataset_generator.generateDataset(n, file.getPath(), seed, threads, binary);
+        } finally {
+            System.setOut(out);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Incremental update for merge_sort --merge-into: only the new rows are sorted,
+ * then one sequential two-way merge with the existing sorted CSV writes the next
+ * version. The merge goes to a temporary file in the same directory that is
+ * renamed into place when complete, so the old version stays readable and
+ * nobody sees a half-written file. On equal keys the existing rows come first,
+ * which is exactly what merge_sort gives for the old dataset with the delta
+ * appended. An existing file that is out of order or has invalid lines is
+ * rejected rather than merged.
+ */
+public class delta_merge {
+    private static final int CHUNK_ROWS = 1 << 16;
+
+    static class Report {
+        String outputFile;
+        long existingRows;
+        int deltaRows;
+        long sortMs;  // sorting the delta
+        long mergeMs; // the streaming merge, including the write
+    }
+
+    // Merges the delta rows into the sorted file, writing outputPrefix + total rows + ".csv"
+    static Report merge(File sorted, File delta, String outputPrefix) throws IOException {
+        if (column_file.isColumnFile(sorted)) {
+            throw new IOException("Only sorted CSV files can be merged into: " + sorted);
+        }
+        Report report = new Report();
+        long start = System.currentTimeMillis();
+        record_store rows = csv_loader.load(delta);
+        adaptive_merge_sort.sort(rows); // stable, so equal delta keys keep their order
+        report.deltaRows = rows.size();
+        report.sortMs = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        File temp = File.createTempFile("delta_merge_", ".tmp", sorted.getAbsoluteFile().getParentFile());
+        try {
+            try (csv_loader.RowReader reader = new csv_loader.RowReader(sorted);
+                 csv_writer writer = new csv_writer(temp)) {
+                report.existingRows = mergeStreams(reader, rows, writer, sorted);
+                if (reader.invalidLines() > 0) {
+                    // The new version would silently lose rows of the old one
+                    throw new IOException(sorted + " has " + reader.invalidLines() + " invalid lines (first at line "
+                            + reader.firstInvalidLine() + "); not merging");
+                }
+            }
+            report.outputFile = outputPrefix + (report.existingRows + report.deltaRows) + ".csv";
+            Files.move(temp.toPath(), new File(report.outputFile).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        report.mergeMs = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    // Streams the existing file in chunks against the sorted delta; returns the existing row count
+    private static long mergeStreams(csv_loader.RowReader reader, record_store delta, csv_writer writer, File sorted)
+            throws IOException {
+        int[] deltaKeys = delta.keys;
+        long[] deltaLabels = delta.labels;
+        int d = 0, deltaSize = delta.size();
+        long existing = 0;
+        long previous = Long.MIN_VALUE;
+        record_store chunk = new record_store(CHUNK_ROWS);
+        while (true) {
+            chunk.clear();
+            int count = reader.read(chunk, CHUNK_ROWS);
+            if (count == 0) break;
+            int[] keys = chunk.keys;
+            long[] labels = chunk.labels;
+            for (int i = 0; i < count; i++) {
+                int key = keys[i];
+                if (key < previous) {
+                    throw new IOException(sorted + " is not sorted at row " + (existing + i + 1));
+                }
+                previous = key;
+                // Delta rows go before the first existing row with a larger key
+                while (d < deltaSize && deltaKeys[d] < key) {
+                    writer.write(deltaKeys[d], deltaLabels[d], delta);
+                    d++;
+                }
+                writer.write(key, labels[i], chunk);
+            }
+            existing += count;
+        }
+        for (; d < deltaSize; d++) {
+            writer.write(deltaKeys[d], deltaLabels[d], delta);
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,53 @@
+import java.io.*;
+
+/**
+ * Checks that merge_sort --merge-into gives exactly what merge_sort gives for the
+ * whole dataset: the first rows are sorted and written as the existing output, the
+ * rest are merged in as the delta. Runs with deltas of one row, a tenth and half of
+ * the rows, and checks that an existing file that is not sorted is refused:
+ *
+ *   java delta_merge_check [rows]
+ */
+public class delta_merge_check {
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store input = sort_check.generate(n);
+        record_store expected = sort_check.reference(input);
+
+        try {
+            for (int deltaRows : new int[] {Math.min(1, n), n / 10, n / 2}) {
+                int existing = n - deltaRows;
+                File sorted = sort_check.writeCSV(sort_check.reference(slice(input, 0, existing)),
+                        "delta_merge_check_sorted.csv");
+                File delta = sort_check.writeCSV(slice(input, existing, n), "delta_merge_check_delta.csv");
+                delta_merge.Report report = delta_merge.merge(sorted, delta, "../temp/delta_merge_check_");
+                File output = new File(report.outputFile);
+                record_store actual = csv_loader.load(output);
+                output.delete();
+                sort_check.expectIdentical("delta merge, " + existing + " existing + " + deltaRows + " new rows",
+                        expected, actual);
+            }
+
+            if (expected.keys[0] == expected.keys[n - 1]) return; // reversing would not unsort it
+            File unsorted = sort_check.writeCSV(sort_check.reversed(expected), "delta_merge_check_unsorted.csv");
+            File delta = sort_check.writeCSV(slice(input, 0, 1), "delta_merge_check_delta.csv");
+            try {
+                delta_merge.merge(unsorted, delta, "../temp/delta_merge_check_");
+                sort_check.fail("delta merge into an unsorted file", "the merge was not refused");
+            } catch (IOException e) {
+                System.out.println("OK delta merge into an unsorted file refused: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            sort_check.fail("delta merge", e.getMessage());
+        }
+    }
+
+    // Rows [from, to) of the store
+    private static record_store slice(record_store store, int from, int to) {
+        record_store rows = new record_store(to - from);
+        for (int i = from; i < to; i++) {
+            rows.add(store.keys[i], store.labels[i]);
+        }
+        return rows;
+    }
+}
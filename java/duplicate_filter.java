@@ -0,0 +1,155 @@
+import java.io.*;
+
+/**
+ * Duplicate-key check fused into the output pass of merge_sort and quick_sort
+ * (--duplicates=report|keep-first|keep-last). Sorted rows stream through
+ * write() on their way to the output, so equal keys are adjacent and one
+ * comparison with the previous key finds every duplicate; nothing is read twice.
+ * "report" passes all rows through and only counts, the keep policies drop all
+ * but the first or the last row of every key. First and last are in output
+ * order, which is input order for merge_sort (a stable sort) and (key, label)
+ * order with --composite. quick_sort is not stable, so it only offers the keep
+ * policies with --composite.
+ */
+public class duplicate_filter {
+    static final int MAX_EXAMPLES = 10;
+
+    enum Policy {
+        REPORT("report"), KEEP_FIRST("keep-first"), KEEP_LAST("keep-last");
+
+        final String option;
+
+        Policy(String option) {
+            this.option = option;
+        }
+
+        static Policy fromOption(String option) {
+            for (Policy policy : values()) {
+                if (policy.option.equals(option)) return policy;
+            }
+            throw new IllegalArgumentException("Unknown duplicate policy: " + option);
+        }
+    }
+
+    // Where the surviving rows go; source holds the label text if it is not packed
+    interface RowSink {
+        void write(int key, long label, record_store source) throws IOException;
+    }
+
+    private final Policy policy;
+    private final RowSink sink;
+    private boolean any;
+    private int previousKey;
+    private long previousLabel;
+    private record_store previousSource;
+    private long run; // rows seen with previousKey
+
+    long rowsIn, rowsOut;
+    long duplicateKeys;  // keys that occur more than once
+    long duplicateRows;  // rows beyond the first of their key
+    long maxCopies = 1;
+    final int[] exampleKeys = new int[MAX_EXAMPLES];
+    final long[] exampleCopies = new long[MAX_EXAMPLES];
+    int examples;
+
+    duplicate_filter(Policy policy, RowSink sink) {
+        this.policy = policy;
+        this.sink = sink;
+    }
+
+    // Rows must arrive in ascending key order
+    void write(int key, long label, record_store source) throws IOException {
+        rowsIn++;
+        if (any && key == previousKey) {
+            run++;
+            if (policy == Policy.REPORT) {
+                emit(key, label, source);
+            } else if (policy == Policy.KEEP_LAST) {
+                previousLabel = label;
+                previousSource = source;
+            }
+            return;
+        }
+        endRun();
+        any = true;
+        previousKey = key;
+        previousLabel = label;
+        previousSource = source;
+        run = 1;
+        if (policy != Policy.KEEP_LAST) emit(key, label, source);
+    }
+
+    // Finishes the last key; must be called once after the last row
+    void finish() throws IOException {
+        endRun();
+        any = false;
+    }
+
+    private void endRun() throws IOException {
+        if (!any) return;
+        if (policy == Policy.KEEP_LAST) emit(previousKey, previousLabel, previousSource);
+        if (run > 1) {
+            duplicateKeys++;
+            duplicateRows += run - 1;
+            maxCopies = Math.max(maxCopies, run);
+            if (examples < MAX_EXAMPLES) {
+                exampleKeys[examples] = previousKey;
+                exampleCopies[examples++] = run;
+            }
+        }
+    }
+
+    private void emit(int key, long label, record_store source) throws IOException {
+        rowsOut++;
+        sink.write(key, label, source);
+    }
+
+    // Streams a sorted store through the filter into a CSV file
+    static duplicate_filter writeCSV(record_store store, String filename, Policy policy) throws IOException {
+        try (csv_writer writer = new csv_writer(new File(filename))) {
+            duplicate_filter filter = new duplicate_filter(policy, writer::write);
+            int[] keys = store.keys;
+            long[] labels = store.labels;
+            for (int i = 0; i < store.size(); i++) {
+                filter.write(keys[i], labels[i], store);
+            }
+            filter.finish();
+            return filter;
+        }
+    }
+
+    // Filters a sorted store in place (the surviving rows are compacted to the front)
+    static duplicate_filter compact(record_store store, Policy policy) throws IOException {
+        int[] keys = store.keys;
+        long[] labels = store.labels;
+        int n = store.size();
+        int[] out = {0};
+        duplicate_filter filter = new duplicate_filter(policy, (key, label, source) -> {
+            keys[out[0]] = key; // never ahead of the row being read
+            labels[out[0]++] = label;
+        });
+        for (int i = 0; i < n; i++) {
+            filter.write(keys[i], labels[i], store);
+        }
+        filter.finish();
+        store.size = out[0];
+        return filter;
+    }
+
+    // Prints the summary and writes it with the examples to the report file
+    void report(String reportFilename) {
+        String summary = String.format("Duplicates (%s): %d keys repeated, %d extra rows, at most %d copies;"
+                + " %d rows in, %d rows out", policy.option, duplicateKeys, duplicateRows, maxCopies, rowsIn, rowsOut);
+        System.out.println(summary);
+        try (PrintWriter writer = new PrintWriter(new FileWriter(reportFilename))) {
+            writer.println(summary);
+            if (examples > 0) writer.println("First repeated keys (key: copies):");
+            for (int i = 0; i < examples; i++) {
+                writer.println(exampleKeys[i] + ": " + exampleCopies[i]);
+            }
+            System.out.println("Duplicate report saved to: " + reportFilename);
+        } catch (IOException e) {
+            System.err.println("Error writing file: " + reportFilename);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.*;
+
+/**
+ * Checks --duplicates=report|keep-first|keep-last against the runs of equal keys in
+ * the merge_sort output: report keeps every row, keep-first the first and keep-last
+ * the last row of each key, and the counts match the runs. Covers filtering in
+ * place (binary output), while writing the CSV and in the final merge of
+ * --external and --pipeline, on input with many repeated keys, a side-table label
+ * in every seventh row, and one key repeated throughout:
+ *
+ *   java duplicate_filter_check [rows]
+ */
+public class duplicate_filter_check {
+    private static final long BYTES_PER_ROW = 24; // external_merge_sort's row plus merge buffer space
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store repeated = sort_check.generate(n);
+        for (int i = 0; i < n; i += 7) {
+            repeated.labels[i] = repeated.label("Label " + i);
+        }
+        record_store oneKey = sort_check.generate(n, 1, sort_check.SEED);
+        String[] names = {"repeated keys", "one key"};
+        record_store[] inputs = {repeated, oneKey};
+
+        try {
+            for (int c = 0; c < inputs.length; c++) {
+                record_store sorted = sort_check.reference(inputs[c]);
+                File dataset = sort_check.writeCSV(inputs[c], "duplicate_filter_check.csv");
+                for (duplicate_filter.Policy policy : duplicate_filter.Policy.values()) {
+                    String what = policy.option + ", " + names[c];
+                    record_store expected = expectedRows(sorted, policy);
+
+                    record_store compacted = sort_check.copy(sorted);
+                    duplicate_filter filter = duplicate_filter.compact(compacted, policy);
+                    expectCounts(what + ", in place", sorted, policy, filter);
+                    expectSameText(what + ", in place", expected, compacted);
+
+                    File output = new File("../temp/duplicate_filter_check_out.csv");
+                    filter = duplicate_filter.writeCSV(sorted, output.getPath(), policy);
+                    expectCounts(what + ", written", sorted, policy, filter);
+                    expectSameText(what + ", written", expected, loadAndDelete(output));
+
+                    external_merge_sort.Report external = external_merge_sort.sort(dataset,
+                            Math.max(1024, n / 5) * BYTES_PER_ROW, "../temp/duplicate_filter_check_", policy);
+                    expectCounts(what + ", external merge", sorted, policy, external.duplicates);
+                    expectSameText(what + ", external merge of " + external.runs + " runs", expected,
+                            loadAndDelete(new File(external.outputFile)));
+
+                    pipelined_merge_sort.Report pipelined = pipelined_merge_sort.sort(dataset,
+                            "../temp/duplicate_filter_check_", 2, Math.max(1, n / 7), policy);
+                    expectCounts(what + ", pipeline", sorted, policy, pipelined.duplicates);
+                    expectSameText(what + ", pipeline of " + pipelined.chunks + " chunks", expected,
+                            loadAndDelete(new File(pipelined.outputFile)));
+                }
+            }
+        } catch (IOException e) {
+            sort_check.fail("duplicate filter", e.getMessage());
+        }
+    }
+
+    // Every row for report, otherwise the first or last row of each run of equal keys
+    private static record_store expectedRows(record_store sorted, duplicate_filter.Policy policy) {
+        record_store rows = new record_store(sorted.size());
+        int n = sorted.size();
+        for (int i = 0; i < n; i++) {
+            boolean first = i == 0 || sorted.keys[i - 1] != sorted.keys[i];
+            boolean last = i == n - 1 || sorted.keys[i + 1] != sorted.keys[i];
+            if (policy == duplicate_filter.Policy.REPORT || (policy == duplicate_filter.Policy.KEEP_FIRST && first)
+                    || (policy == duplicate_filter.Policy.KEEP_LAST && last)) {
+                rows.add(sorted.keys[i], sorted.labelText(sorted.labels[i]));
+            }
+        }
+        return rows;
+    }
+
+    // Repeated keys, extra rows and the longest run, counted from the sorted rows
+    private static void expectCounts(String what, record_store sorted, duplicate_filter.Policy policy,
+                                     duplicate_filter filter) {
+        long keys = 0, extra = 0, maxCopies = 1, distinct = 0;
+        for (int start = 0; start < sorted.size(); ) {
+            int end = start + 1;
+            while (end < sorted.size() && sorted.keys[end] == sorted.keys[start]) end++;
+            distinct++;
+            if (end - start > 1) {
+                keys++;
+                extra += end - start - 1;
+                maxCopies = Math.max(maxCopies, end - start);
+            }
+            start = end;
+        }
+        long rowsOut = policy == duplicate_filter.Policy.REPORT ? sorted.size() : distinct;
+        if (filter.duplicateKeys != keys || filter.duplicateRows != extra || filter.maxCopies != maxCopies
+                || filter.rowsIn != sorted.size() || filter.rowsOut != rowsOut) {
+            sort_check.fail(what, "counted " + filter.duplicateKeys + " keys, " + filter.duplicateRows
+                    + " extra rows, at most " + filter.maxCopies + " copies, " + filter.rowsIn + " in, "
+                    + filter.rowsOut + " out; expected " + keys + ", " + extra + ", " + maxCopies + ", "
+                    + sorted.size() + ", " + rowsOut);
+        }
+    }
+
+    // Same rows as the CSV writes them
+    private static void expectSameText(String what, record_store expected, record_store actual) {
+        if (expected.size() != actual.size()) {
+            sort_check.fail(what, "expected " + expected.size() + " rows, got " + actual.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.format(i).equals(actual.format(i))) {
+                sort_check.fail(what, "row " + (i + 1) + ": expected " + expected.format(i) + ", got "
+                        + actual.format(i));
+            }
+        }
+        System.out.println("OK " + what);
+    }
+
+    private static record_store loadAndDelete(File file) throws IOException {
+        record_store rows = csv_loader.load(file);
+        file.delete();
+        return rows;
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Out-of-core mode for merge_sort. The input is cut into runs that fit the memory
+ * budget, each run is sorted with merge_sort.mergeSort and spilled to ../temp as
+ * fixed 12-byte records, and the runs are then merged through a min-heap of run
+ * cursors. Ties go to the earlier run, so the result matches the in-memory sort.
+ * With a duplicate policy the final merge streams through a duplicate_filter on
+ * its way to the output, as the in-memory sort's output pass does.
+ */
+public class external_merge_sort {
+    static final long DEFAULT_BUDGET_MB = 256;
+    private static final int RECORD_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int BYTES_PER_ROW = 2 * RECORD_BYTES; // row plus merge buffer space
+    private static final int MAX_FAN_IN = 64;
+    private static final int MIN_IO_BUFFER = 8 << 10;
+    private static final int MAX_IO_BUFFER = 1 << 20;
+
+    static class Report {
+        String outputFile;
+        long rows;
+        int runs;
+        int mergePasses;
+        long bytesSpilled;
+        duplicate_filter duplicates; // null without a duplicate policy
+    }
+
+    // Receives merged rows in sorted order
+    private interface RowSink {
+        void write(int key, long label) throws IOException;
+    }
+
+    static Report sort(File input, long budgetBytes, String outputPrefix) throws IOException {
+        return sort(input, budgetBytes, outputPrefix, null);
+    }
+
+    // Sorts with the duplicate policy applied to the output, if one is given
+    static Report sort(File input, long budgetBytes, String outputPrefix, duplicate_filter.Policy duplicates)
+            throws IOException {
+        Report report = new Report();
+        int rowsPerRun = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, budgetBytes / BYTES_PER_ROW));
+        int ioBuffer = (int) Math.max(MIN_IO_BUFFER, Math.min(MAX_IO_BUFFER, budgetBytes / (MAX_FAN_IN + 1)));
+        ioBuffer -= ioBuffer % RECORD_BYTES;
+
+        File tempDir = new File("../temp");
+        tempDir.mkdirs();
+        List<File> runs = new ArrayList<>();
+
+        try {
+            // Phase 1: sorted runs
+            record_store run = new record_store(Math.min(rowsPerRun, 1 << 20));
+            try (csv_loader.RowReader reader = new csv_loader.RowReader(input)) {
+                while (reader.read(run, rowsPerRun) > 0) {
+                    report.rows += run.size();
+                    if (run.size() > 1) {
+                        merge_sort.mergeSort(run, 0, run.size() - 1);
+                    }
+                    if (runs.isEmpty() && run.size() < rowsPerRun) {
+                        // Everything fit in one run, no need to touch the disk
+                        report.runs = 1;
+                        report.outputFile = outputName(outputPrefix, report.rows, duplicates);
+                        if (duplicates != null) {
+                            report.duplicates = duplicate_filter.writeCSV(run, report.outputFile, duplicates);
+                        } else {
+                            merge_sort.writeOutput(run, report.outputFile);
+                        }
+                        return report;
+                    }
+                    File runFile = File.createTempFile("run_", ".bin", tempDir);
+                    runs.add(runFile);
+                    report.bytesSpilled += writeRun(run, runFile, ioBuffer);
+                    run.size = 0; // keeps the side labels, the spilled runs still refer to them
+                }
+            }
+            report.runs = runs.size();
+            report.outputFile = outputName(outputPrefix, report.rows, duplicates);
+
+            // Phase 2: merge groups of runs until one pass can produce the output
+            while (runs.size() > MAX_FAN_IN) {
+                List<File> next = new ArrayList<>();
+                for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+                    List<File> group = runs.subList(from, Math.min(from + MAX_FAN_IN, runs.size()));
+                    if (group.size() == 1) {
+                        next.add(group.get(0));
+                        continue;
+                    }
+                    File merged = File.createTempFile("run_", ".bin", tempDir);
+                    next.add(merged);
+                    try (RunWriter writer = new RunWriter(merged, ioBuffer)) {
+                        mergeRuns(group, ioBuffer, writer::write);
+                        report.bytesSpilled += writer.bytesWritten;
+                    }
+                    for (File f : group) {
+                        f.delete();
+                    }
+                }
+                runs = next;
+                report.mergePasses++;
+            }
+
+            try (csv_writer writer = new csv_writer(new File(report.outputFile))) {
+                if (duplicates != null) {
+                    duplicate_filter filter = new duplicate_filter(duplicates, writer::write);
+                    mergeRuns(runs, ioBuffer, (key, label) -> filter.write(key, label, run));
+                    filter.finish();
+                    report.duplicates = filter;
+                } else {
+                    mergeRuns(runs, ioBuffer, (key, label) -> writer.write(key, label, run));
+                }
+            }
+            report.mergePasses++;
+            return report;
+        } finally {
+            for (File f : runs) {
+                f.delete();
+            }
+        }
+    }
+
+    // "<prefix><rows>.csv", with "_dedup" before the extension when rows are dropped
+    static String outputName(String outputPrefix, long rows, duplicate_filter.Policy duplicates) {
+        boolean dropped = duplicates != null && duplicates != duplicate_filter.Policy.REPORT;
+        return outputPrefix + rows + (dropped ? "_dedup" : "") + ".csv";
+    }
+
+    private static long writeRun(record_store run, File file, int ioBuffer) throws IOException {
+        try (RunWriter writer = new RunWriter(file, ioBuffer)) {
+            for (int i = 0; i < run.size(); i++) {
+                writer.write(run.keys[i], run.labels[i]);
+            }
+            return writer.bytesWritten;
+        }
+    }
+
+    // K-way merge with a binary min-heap of cursors ordered by (key, run index)
+    private static void mergeRuns(List<File> runs, int ioBuffer, RowSink sink) throws IOException {
+        int k = runs.size();
+        RunReader[] cursors = new RunReader[k];
+        int[] heap = new int[k];
+        int heapSize = 0;
+
+        try {
+            for (int r = 0; r < k; r++) {
+                cursors[r] = new RunReader(runs.get(r), ioBuffer);
+                if (cursors[r].next()) {
+                    heap[heapSize] = r;
+                    siftUp(heap, heapSize, cursors);
+                    heapSize++;
+                }
+            }
+
+            while (heapSize > 0) {
+                RunReader top = cursors[heap[0]];
+                sink.write(top.key, top.label);
+                if (!top.next()) {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, cursors);
+            }
+        } finally {
+            for (RunReader cursor : cursors) {
+                if (cursor != null) cursor.close();
+            }
+        }
+    }
+
+    private static boolean less(RunReader[] cursors, int a, int b) {
+        int keyA = cursors[a].key, keyB = cursors[b].key;
+        return keyA < keyB || (keyA == keyB && a < b);
+    }
+
+    private static void siftUp(int[] heap, int i, RunReader[] cursors) {
+        int item = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(cursors, item, heap[parent])) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, RunReader[] cursors) {
+        if (size == 0) return;
+        int item = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && less(cursors, heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(cursors, heap[child], item)) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = item;
+    }
+
+    // Sequential reader over one spilled run
+    private static final class RunReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+        int key;
+        long label;
+
+        RunReader(File file, int ioBuffer) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            buf = ByteBuffer.allocate(ioBuffer);
+            buf.flip();
+        }
+
+        boolean next() throws IOException {
+            if (buf.remaining() < RECORD_BYTES) {
+                buf.compact();
+                while (buf.hasRemaining() && channel.read(buf) > 0) {
+                    // keep filling
+                }
+                buf.flip();
+                if (buf.remaining() < RECORD_BYTES) return false;
+            }
+            key = buf.getInt();
+            label = buf.getLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // Buffered writer of fixed-size run records
+    private static final class RunWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+        long bytesWritten;
+
+        RunWriter(File file, int ioBuffer) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            buf = ByteBuffer.allocate(ioBuffer);
+        }
+
+        void write(int key, long label) throws IOException {
+            if (buf.remaining() < RECORD_BYTES) flush();
+            buf.putInt(key).putLong(label);
+            bytesWritten += RECORD_BYTES;
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+}
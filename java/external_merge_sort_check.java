@@ -0,0 +1,34 @@
+import java.io.*;
+
+/**
+ * Checks that merge_sort --external writes exactly what the in-memory merge sort
+ * writes, with budgets that keep everything in one run, spill a few runs and
+ * need more than one merge pass:
+ *
+ *   java external_merge_sort_check [rows]
+ */
+public class external_merge_sort_check {
+    private static final long BYTES_PER_ROW = 24; // external_merge_sort's row plus merge buffer space
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store input = sort_check.generate(n);
+        record_store expected = sort_check.reference(input);
+
+        long[] runRows = {n + 1L, 8192, 1024};
+        try {
+            File dataset = sort_check.writeCSV(input, "external_merge_sort_check.csv");
+            for (long rows : runRows) {
+                external_merge_sort.Report report = external_merge_sort.sort(dataset, rows * BYTES_PER_ROW,
+                        "../temp/external_merge_sort_check_");
+                File output = new File(report.outputFile);
+                record_store actual = csv_loader.load(output);
+                output.delete();
+                sort_check.expectIdentical("external merge sort, " + report.runs + " runs, " + report.mergePasses
+                        + " merge passes", expected, actual);
+            }
+        } catch (IOException e) {
+            sort_check.fail("external merge sort", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Introsort-style quick sort for quick_sort --intro. The pivot strategy is
+ * selectable, partitioning is three-way so runs of equal keys are finished in one
+ * pass, small ranges use insertion sort, only the smaller side is recursed on, and
+ * a range that exceeds 2*log2(n) partitioning levels is finished with heapsort.
+ */
+public class intro_quick_sort {
+    static final int DEFAULT_CUTOFF = 16;
+    private static final int NINTHER_THRESHOLD = 40;
+
+    enum Pivot {
+        // Same choice as quick_sort.partition, kept so old measurements can be reproduced
+        LAST("last") {
+            int choose(int[] keys, int low, int high) {
+                return high;
+            }
+        },
+        MEDIAN_OF_3("median3") {
+            int choose(int[] keys, int low, int high) {
+                return median3(keys, low, low + (high - low) / 2, high);
+            }
+        },
+        // Median of three medians of three (Tukey's ninther), median of 3 for small ranges
+        NINTHER("ninther") {
+            int choose(int[] keys, int low, int high) {
+                int n = high - low + 1;
+                int mid = low + (high - low) / 2;
+                if (n < NINTHER_THRESHOLD) {
+                    return median3(keys, low, mid, high);
+                }
+                int step = n / 8;
+                int a = median3(keys, low, low + step, low + 2 * step);
+                int b = median3(keys, mid - step, mid, mid + step);
+                int c = median3(keys, high - 2 * step, high - step, high);
+                return median3(keys, a, b, c);
+            }
+        },
+        RANDOM("random") {
+            int choose(int[] keys, int low, int high) {
+                return ThreadLocalRandom.current().nextInt(low, high + 1);
+            }
+        };
+
+        final String option;
+
+        Pivot(String option) {
+            this.option = option;
+        }
+
+        abstract int choose(int[] keys, int low, int high);
+
+        static Pivot fromOption(String option) {
+            for (Pivot pivot : values()) {
+                if (pivot.option.equals(option)) return pivot;
+            }
+            throw new IllegalArgumentException("Unknown pivot strategy: " + option);
+        }
+    }
+
+    static void sort(record_store store, Pivot pivot, int cutoff) {
+        if (store.size() > 1) {
+            sortRange(store, 0, store.size() - 1, depthLimit(store.size()), pivot, cutoff);
+        }
+    }
+
+    static int depthLimit(int n) {
+        return 2 * (31 - Integer.numberOfLeadingZeros(Math.max(n, 1)));
+    }
+
+    // Sorts [low, high] inclusive, switching to heapsort once depthLimit levels are used up
+    static void sortRange(record_store store, int low, int high, int depthLimit, Pivot pivot, int cutoff) {
+        int[] keys = store.keys;
+        while (high - low + 1 > cutoff) {
+            if (depthLimit-- == 0) {
+                heapSort(store, low, high);
+                return;
+            }
+
+            long bounds = partition3(store, low, high, pivot.choose(keys, low, high));
+            int lt = (int) (bounds >>> 32);
+            int gt = (int) bounds;
+
+            // Recurse into the smaller side and loop on the larger one
+            if (lt - low < high - gt) {
+                sortRange(store, low, lt - 1, depthLimit, pivot, cutoff);
+                low = gt + 1;
+            } else {
+                sortRange(store, gt + 1, high, depthLimit, pivot, cutoff);
+                high = lt - 1;
+            }
+        }
+        insertionSort(store, low, high);
+    }
+
+    /*
+     * Three-way partition of [low, high] around keys[pivotIndex]. Afterwards
+     * [low, lt) < pivot, [lt, gt] == pivot and (gt, high] > pivot; lt and gt are
+     * returned packed as (lt << 32) | gt.
+     */
+    static long partition3(record_store store, int low, int high, int pivotIndex) {
+        int[] keys = store.keys;
+        int pivot = keys[pivotIndex];
+        int lt = low, i = low, gt = high;
+        while (i <= gt) {
+            int key = keys[i];
+            if (key < pivot) {
+                store.swap(lt++, i++);
+            } else if (key > pivot) {
+                store.swap(i, gt--);
+            } else {
+                i++;
+            }
+        }
+        return ((long) lt << 32) | (gt & 0xFFFFFFFFL);
+    }
+
+    static void insertionSort(record_store store, int low, int high) {
+        int[] keys = store.keys;
+        long[] labels = store.labels;
+        for (int i = low + 1; i <= high; i++) {
+            int key = keys[i];
+            long label = labels[i];
+            int j = i - 1;
+            while (j >= low && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                labels[j + 1] = labels[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            labels[j + 1] = label;
+        }
+    }
+
+    static void heapSort(record_store store, int low, int high) {
+        int n = high - low + 1;
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDown(store, low, i, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            store.swap(low, low + end);
+            siftDown(store, low, 0, end);
+        }
+    }
+
+    private static void siftDown(record_store store, int base, int i, int n) {
+        int[] keys = store.keys;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) return;
+            if (child + 1 < n && keys[base + child + 1] > keys[base + child]) {
+                child++;
+            }
+            if (keys[base + i] >= keys[base + child]) return;
+            store.swap(base + i, base + child);
+            i = child;
+        }
+    }
+
+    private static int median3(int[] keys, int a, int b, int c) {
+        int ka = keys[a], kb = keys[b], kc = keys[c];
+        if (ka < kb) {
+            return kb < kc ? b : (ka < kc ? c : a);
+        } else {
+            return ka < kc ? a : (kb < kc ? c : b);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Checks quick_sort --intro against merge_sort for every pivot strategy on random,
+ * sorted, reversed and few-unique input. Quicksort is not stable, so each key must
+ * carry the same labels but in any order:
+ *
+ *   java intro_quick_sort_check [rows]
+ */
+public class intro_quick_sort_check {
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store random = sort_check.generate(n);
+        record_store sorted = sort_check.reference(random);
+        String[] names = {"random", "sorted", "reversed", "few unique"};
+        record_store[] inputs = {random, sorted, sort_check.reversed(sorted), sort_check.generate(n, 3, sort_check.SEED)};
+
+        for (int i = 0; i < inputs.length; i++) {
+            record_store expected = sort_check.reference(inputs[i]);
+            for (intro_quick_sort.Pivot pivot : intro_quick_sort.Pivot.values()) {
+                record_store actual = sort_check.copy(inputs[i]);
+                intro_quick_sort.sort(actual, pivot, intro_quick_sort.DEFAULT_CUTOFF);
+                sort_check.expectSameRows("intro quick sort, " + pivot.option + " pivot, " + names[i] + " input",
+                        expected, actual);
+            }
+            record_store actual = sort_check.copy(inputs[i]);
+            intro_quick_sort.sort(actual, intro_quick_sort.Pivot.MEDIAN_OF_3, 1);
+            sort_check.expectSameRows("intro quick sort, cutoff 1, " + names[i] + " input", expected, actual);
+        }
+    }
+}
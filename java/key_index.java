@@ -0,0 +1,214 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Sorted (key, byte offset of the row) index of a CSV file, persisted next to it
+ * as "<file>.idx" so later runs map it instead of re-reading and re-sorting the
+ * data. Layout, little-endian:
+ *
+ *   header (64 bytes): magic, version, row count, source length, source mtime,
+ *                      flags (bit 0: the source rows are already in key order)
+ *   keys:    int[count]  in ascending order (ties keep file order)
+ *   offsets: long[count] byte offset of each key's line in the source file
+ *            (for a binary column_file dataset, the row number instead)
+ *
+ * The index is rebuilt whenever the source file's length or mtime changes.
+ */
+public class key_index implements Closeable {
+    private static final int MAGIC = 0x4B494458; // "KIDX"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int SORTED_FLAG = 1;
+    private static final int CHUNK_ROWS = 1 << 16; // rows read per call while building
+
+    private final FileChannel channel;
+    private final IntBuffer keys;
+    private final LongBuffer offsets;
+    private final int count;
+    private final boolean sourceSorted;
+
+    private key_index(FileChannel channel, IntBuffer keys, LongBuffer offsets, int count, boolean sourceSorted) {
+        this.channel = channel;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.count = count;
+        this.sourceSorted = sourceSorted;
+    }
+
+    static File indexFileFor(File source) {
+        return new File(source.getPath() + ".idx");
+    }
+
+    // Maps the existing index for the source, building it first if it is missing or stale
+    static key_index open(File source) throws IOException {
+        File indexFile = indexFileFor(source);
+        key_index index = tryMap(indexFile, source);
+        if (index == null) {
+            build(source, indexFile);
+            index = tryMap(indexFile, source);
+            if (index == null) {
+                throw new IOException("Could not map index " + indexFile);
+            }
+        }
+        return index;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int key(int i) {
+        return keys.get(i);
+    }
+
+    long offset(int i) {
+        return offsets.get(i);
+    }
+
+    // True if the source rows are in key order, so index entries [a, b) are one contiguous block of the file
+    boolean sourceSorted() {
+        return sourceSorted;
+    }
+
+    // First entry whose key is >= target, size() if there is none
+    int lowerBound(int target) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys.get(mid) < target) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // First entry whose key is > target, size() if there is none
+    int upperBound(int target) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys.get(mid) <= target) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static void build(File source, File indexFile) throws IOException {
+        // Collect every row's key and line offset; the offsets ride in the label column
+        record_store pairs;
+        if (column_file.isColumnFile(source)) {
+            record_store rows = column_file.read(source);
+            long[] rowNumbers = new long[rows.keys.length];
+            for (int i = 0; i < rows.size(); i++) {
+                rowNumbers[i] = i;
+            }
+            pairs = new record_store(rows.keys, rowNumbers, rows.size());
+        } else {
+            // Keys only, a chunk at a time; the labels are never parsed
+            int[] keys = new int[CHUNK_ROWS];
+            long[] rowOffsets = new long[CHUNK_ROWS];
+            int n = 0;
+            try (csv_loader.RowReader reader = new csv_loader.RowReader(source)) {
+                while (true) {
+                    if (keys.length - n < CHUNK_ROWS) {
+                        long capacity = Math.max(n + (long) CHUNK_ROWS, 2L * keys.length);
+                        if (capacity > Integer.MAX_VALUE - 8) {
+                            if (n + (long) CHUNK_ROWS > Integer.MAX_VALUE - 8) {
+                                throw new IOException("Too many rows to index in " + source);
+                            }
+                            capacity = Integer.MAX_VALUE - 8;
+                        }
+                        keys = Arrays.copyOf(keys, (int) capacity);
+                        rowOffsets = Arrays.copyOf(rowOffsets, (int) capacity);
+                    }
+                    int count = reader.readKeys(keys, rowOffsets, n, CHUNK_ROWS);
+                    if (count == 0) break;
+                    n += count;
+                }
+            }
+            pairs = new record_store(keys, rowOffsets, n);
+        }
+        parallel_merge_sort.sort(pairs, Runtime.getRuntime().availableProcessors(),
+                parallel_merge_sort.DEFAULT_CUTOFF);
+
+        // The sort is stable, so the offsets come out ascending exactly when the source was in key order
+        int n = pairs.size();
+        boolean sorted = true;
+        for (int i = 1; i < n && sorted; i++) {
+            sorted = pairs.labels[i - 1] < pairs.labels[i];
+        }
+
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION).putLong(n).putLong(source.length()).putLong(source.lastModified())
+                    .putInt(sorted ? SORTED_FLAG : 0);
+            buf.position(HEADER_BYTES);
+            for (int i = 0; i < n; i++) {
+                if (buf.remaining() < Integer.BYTES) drain(out, buf);
+                buf.putInt(pairs.keys[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.remaining() < Long.BYTES) drain(out, buf);
+                buf.putLong(pairs.labels[i]);
+            }
+            drain(out, buf);
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!tempFile.renameTo(indexFile)) {
+                throw new IOException("Could not replace index " + indexFile);
+            }
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        buf.clear();
+    }
+
+    // Returns null if the index file is missing, malformed or out of date
+    private static key_index tryMap(File indexFile, File source) throws IOException {
+        if (!indexFile.exists() || indexFile.length() < HEADER_BYTES) return null;
+        FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            long n = header.getLong(8);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || header.getLong(16) != source.length() || header.getLong(24) != source.lastModified()
+                    || channel.size() != HEADER_BYTES + n * (Integer.BYTES + Long.BYTES)) {
+                channel.close();
+                return null;
+            }
+            if (n * Long.BYTES > Integer.MAX_VALUE) {
+                throw new IOException("Index too large to map: " + n + " rows");
+            }
+            long keysAt = HEADER_BYTES;
+            long offsetsAt = keysAt + n * Integer.BYTES;
+            IntBuffer keys = channel.map(FileChannel.MapMode.READ_ONLY, keysAt, n * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            LongBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, offsetsAt, n * Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            boolean sorted = (header.getInt(32) & SORTED_FLAG) != 0;
+            return new key_index(channel, keys, offsets, (int) n, sorted);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+}
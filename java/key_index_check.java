@@ -0,0 +1,143 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Checks the key_index built for a CSV or .bin file. The CSV files span several
+ * build chunks and mix valid rows (padding, CRLF, side-table labels) with blank
+ * and invalid lines; every valid row must appear exactly once with its key and the
+ * byte offset of its line, in key order with equal keys in file order, and the
+ * sorted flag must say whether the file was in key order. For a .bin file the
+ * offsets are row numbers. An index is reused while its source is unchanged and
+ * rebuilt when the source grows or the index file is damaged:
+ *
+ *   java key_index_check [rows]
+ */
+public class key_index_check {
+    private static final int DEFAULT_ROWS = 200_000;
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, DEFAULT_ROWS);
+        record_store rows = sort_check.generate(n);
+        for (int i = 0; i < n; i += 17) {
+            rows.labels[i] = rows.label("Label \u00e9 " + i);
+        }
+        try {
+            expectIndex("unsorted CSV", rows, false);
+            expectIndex("sorted CSV", sort_check.reference(rows), true);
+
+            record_store packed = sort_check.generate(n);
+            for (boolean sorted : new boolean[] {false, true}) {
+                record_store source = sorted ? sort_check.reference(packed) : packed;
+                File file = temp("key_index_check_" + sorted + column_file.EXTENSION);
+                column_file.write(source, file, 0);
+                long[] rowNumbers = new long[n];
+                for (int i = 0; i < n; i++) rowNumbers[i] = i;
+                try (key_index index = key_index.open(file)) {
+                    expectEntries((sorted ? "sorted" : "unsorted") + " .bin", index, source.keys, rowNumbers, n,
+                            sorted);
+                }
+            }
+        } catch (IOException e) {
+            sort_check.fail("key index", e.getMessage());
+        }
+    }
+
+    // Writes the rows with blank and invalid lines between them, then checks the
+    // index, its reuse and its rebuilds
+    private static void expectIndex(String what, record_store rows, boolean sorted) throws IOException {
+        int n = rows.size();
+        File file = temp("key_index_check_" + sorted + ".csv");
+        int[] keys = new int[n];
+        long[] offsets = new long[n];
+        SplittableRandom random = new SplittableRandom(sort_check.SEED);
+        String[] junk = {"\n", "\r\n", "not a row\n", "12\n", "  ,label\n"};
+        long offset = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < n; i++) {
+                if (random.nextInt(50) == 0) {
+                    offset += write(out, junk[random.nextInt(junk.length)]);
+                }
+                String label = rows.labelText(rows.labels[i]);
+                String line = i % 7 == 0 ? " \"" + rows.keys[i] + "\" , " + label + "\r\n"
+                        : rows.keys[i] + "," + label + "\n";
+                keys[i] = rows.keys[i];
+                offsets[i] = offset;
+                offset += write(out, line);
+            }
+        }
+
+        File indexFile = key_index.indexFileFor(file);
+        indexFile.delete();
+        try (key_index index = key_index.open(file)) {
+            expectEntries(what, index, keys, offsets, n, sorted);
+        }
+        long built = indexFile.lastModified();
+        long length = indexFile.length();
+
+        // Unchanged source: the index file is mapped as it is
+        try (key_index index = key_index.open(file)) {
+            if (indexFile.lastModified() != built || indexFile.length() != length || index.size() != n) {
+                sort_check.fail(what, "the index was rebuilt for an unchanged source");
+            }
+        }
+        System.out.println("OK " + what + ", index reused");
+
+        // A damaged index is rebuilt
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length - 1);
+        }
+        try (key_index index = key_index.open(file)) {
+            expectEntries(what + ", damaged index", index, keys, offsets, n, sorted);
+        }
+
+        // A row appended to the source is in the rebuilt index
+        int key = rows.keys[n - 1];
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            write(out, key + ",appended\n");
+        }
+        keys = Arrays.copyOf(keys, n + 1);
+        offsets = Arrays.copyOf(offsets, n + 1);
+        keys[n] = key;
+        offsets[n] = offset;
+        try (key_index index = key_index.open(file)) {
+            expectEntries(what + ", appended row", index, keys, offsets, n + 1, sorted);
+        }
+    }
+
+    // The index holds exactly the (key, offset) pairs, stably ordered by key
+    private static void expectEntries(String what, key_index index, int[] keys, long[] offsets, int n,
+                                      boolean sorted) {
+        record_store expected = sort_check.reference(new record_store(keys.clone(), offsets.clone(), n));
+        if (index.size() != n) {
+            sort_check.fail(what, "the index has " + index.size() + " entries, expected " + n);
+        }
+        for (int i = 0; i < n; i++) {
+            if (index.key(i) != expected.keys[i] || index.offset(i) != expected.labels[i]) {
+                sort_check.fail(what, "entry " + i + " is " + index.key(i) + " at " + index.offset(i) + ", expected "
+                        + expected.keys[i] + " at " + expected.labels[i]);
+            }
+        }
+        if (index.sourceSorted() != sorted) {
+            sort_check.fail(what, "the index says the source is " + (sorted ? "not " : "") + "in key order");
+        }
+        System.out.println("OK " + what + ", " + n + " entries");
+    }
+
+    private static int write(OutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    private static File temp(String name) {
+        new File("../temp").mkdirs();
+        File file = new File("../temp", name);
+        file.deleteOnExit();
+        key_index.indexFileFor(file).deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Linked AVL tree with one Node object per key, the conventional layout that
+ * avl_tree is compared against. Same operations and balancing rules as avl_tree.
+ */
+public class linked_avl_tree implements avl_index {
+
+    private static final class Node {
+        int key;
+        long label;
+        Node left, right;
+        int height = 1;
+
+        Node(int key, long label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    @Override
+    public boolean insert(int key, long label) {
+        int before = size;
+        root = insert(root, key, label);
+        return size > before;
+    }
+
+    @Override
+    public boolean delete(int key) {
+        int before = size;
+        root = delete(root, key);
+        return size < before;
+    }
+
+    @Override
+    public long get(int key) {
+        Node node = root;
+        while (node != null) {
+            if (key == node.key) return node.label;
+            node = key < node.key ? node.left : node.right;
+        }
+        return NOT_FOUND;
+    }
+
+    @Override
+    public int range(int low, int high, RowVisitor visitor) {
+        return low > high ? 0 : range(root, low, high, visitor);
+    }
+
+    @Override
+    public void bulkLoad(int[] sortedKeys, long[] sortedLabels, int n) {
+        record_store rows = avl_index.lastOfEachKey(sortedKeys, sortedLabels, n);
+        size = rows.size();
+        root = build(rows.keys, rows.labels, 0, rows.size() - 1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int height() {
+        return height(root);
+    }
+
+    @Override
+    public int verifiedHeight() {
+        return verifiedHeight(root, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Height of the subtree whose keys must lie strictly between low and high, or -1
+    private static int verifiedHeight(Node node, long low, long high) {
+        if (node == null) return 0;
+        if (node.key <= low || node.key >= high) return -1;
+        int leftHeight = verifiedHeight(node.left, low, node.key);
+        int rightHeight = verifiedHeight(node.right, node.key, high);
+        if (leftHeight < 0 || rightHeight < 0 || Math.abs(leftHeight - rightHeight) > 1) return -1;
+        int height = 1 + Math.max(leftHeight, rightHeight);
+        return node.height == height ? height : -1;
+    }
+
+    private static Node build(int[] sortedKeys, long[] sortedLabels, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        Node node = new Node(sortedKeys[mid], sortedLabels[mid]);
+        node.left = build(sortedKeys, sortedLabels, lo, mid - 1);
+        node.right = build(sortedKeys, sortedLabels, mid + 1, hi);
+        update(node);
+        return node;
+    }
+
+    private Node insert(Node node, int key, long label) {
+        if (node == null) {
+            size++;
+            return new Node(key, label);
+        }
+        if (key < node.key) {
+            node.left = insert(node.left, key, label);
+        } else if (key > node.key) {
+            node.right = insert(node.right, key, label);
+        } else {
+            node.label = label;
+            return node;
+        }
+        return rebalance(node);
+    }
+
+    private Node delete(Node node, int key) {
+        if (node == null) return null;
+        if (key < node.key) {
+            node.left = delete(node.left, key);
+        } else if (key > node.key) {
+            node.right = delete(node.right, key);
+        } else {
+            if (node.left == null || node.right == null) {
+                size--;
+                return node.left != null ? node.left : node.right;
+            }
+            // Two children: take over the successor's row and remove the successor
+            Node successor = node.right;
+            while (successor.left != null) successor = successor.left;
+            node.key = successor.key;
+            node.label = successor.label;
+            node.right = delete(node.right, successor.key);
+        }
+        return rebalance(node);
+    }
+
+    private static int range(Node node, int low, int high, RowVisitor visitor) {
+        if (node == null) return 0;
+        int count = 0;
+        if (low < node.key) count += range(node.left, low, high, visitor);
+        if (low <= node.key && node.key <= high) {
+            visitor.visit(node.key, node.label);
+            count++;
+        }
+        if (node.key < high) count += range(node.right, low, high, visitor);
+        return count;
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+}
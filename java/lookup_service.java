@@ -0,0 +1,381 @@
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Resident lookup service over a sorted output file. The file is loaded and its
+ * key order checked once (an unsorted file is refused), then the service answers
+ * lookups until stdin closes or the process is stopped:
+ *
+ *   java lookup_service merge_sort_1000000.csv [--port=7070 | --unix=/tmp/lookup.sock]
+ *
+ * Without a port or socket path requests are read from stdin. Each request is one
+ * line of keys separated by spaces or commas; the answer is one line per key in
+ * request order, "key index label" for the first row with that key or "key -1".
+ * Keys of a batch are sorted and searched together: every search starts where
+ * the previous one ended and gallops forward, so neighbouring keys share the
+ * cache lines of their search paths. "stats" prints the throughput and latency
+ * report, "quit" ends the session. The report is also written to
+ * ../outputs/lookup_service_<n>.txt when the service stops.
+ *
+ * A socket file left at the --unix path by an earlier run is replaced; anything
+ * else there, or a socket another service still listens on, is left alone and the
+ * service does not start.
+ */
+public class lookup_service {
+    private static final String USAGE =
+            "Usage: java lookup_service <sorted_file> [--port=<port> | --unix=<socket path>]";
+
+    // File type bits of a unix:mode attribute
+    private static final int S_IFMT = 0170000, S_IFSOCK = 0140000;
+
+    private final record_store store;
+    private final int[] keys;
+    private final long[] labels;
+    private final int n;
+    private final Stats stats = new Stats();
+
+    lookup_service(record_store store) {
+        this.store = store;
+        keys = store.keys;
+        labels = store.labels;
+        n = store.size();
+    }
+
+    public static void main(String[] args) {
+        String filename = null;
+        int port = -1;
+        String unixPath = null;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--port=")) {
+                    port = Integer.parseInt(arg.substring("--port=".length()));
+                } else if (arg.startsWith("--unix=")) {
+                    unixPath = arg.substring("--unix=".length());
+                } else if (!arg.startsWith("--") && filename == null) {
+                    filename = arg;
+                } else {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        if (filename == null || (port >= 0 && unixPath != null)) {
+            System.out.println(USAGE);
+            return;
+        }
+
+        File inputFile = new File("../outputs", filename);
+        if (!inputFile.exists()) inputFile = new File(filename);
+        if (!inputFile.exists()) {
+            System.out.println("File not found: " + inputFile.getAbsolutePath());
+            return;
+        }
+
+        record_store store;
+        long start = System.nanoTime();
+        try {
+            store = csv_loader.load(inputFile);
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+            return;
+        }
+        int unsorted = firstUnsorted(store);
+        if (unsorted >= 0) {
+            // The gallop and binary searches would silently miss keys
+            System.out.println(inputFile.getName() + " is not sorted by key at row " + (unsorted + 1)
+                    + "; not starting");
+            return;
+        }
+        lookup_service service = new lookup_service(store);
+        System.err.printf("Loaded %d rows from %s in %.1f ms%n", service.n, inputFile.getName(),
+                (System.nanoTime() - start) / 1_000_000.0);
+
+        File reportFile = new File("../outputs", "lookup_service_" + service.n + ".txt");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> service.saveReport(reportFile)));
+
+        try {
+            if (port >= 0) {
+                service.serve(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), null);
+            } else if (unixPath != null) {
+                Path path = Path.of(unixPath);
+                removeStaleSocket(path);
+                service.serve(UnixDomainSocketAddress.of(path), path);
+            } else {
+                service.session(System.in, System.out);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    // Deletes a socket file nobody listens on; any other file at the path is an error
+    private static void removeStaleSocket(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) return;
+        int mode;
+        try {
+            mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException(path + " already exists; not starting");
+        }
+        if ((mode & S_IFMT) != S_IFSOCK) {
+            throw new IOException(path + " exists and is not a socket; not starting");
+        }
+        SocketChannel probe;
+        try {
+            probe = SocketChannel.open(UnixDomainSocketAddress.of(path));
+        } catch (ConnectException e) {
+            Files.delete(path); // left behind by a service that has stopped
+            return;
+        }
+        probe.close();
+        throw new IOException(path + " is in use by another service; not starting");
+    }
+
+    // Index of the first row with a smaller key than the row before it, or -1 if keys ascend
+    static int firstUnsorted(record_store store) {
+        int[] keys = store.keys;
+        for (int i = 1; i < store.size(); i++) {
+            if (keys[i] < keys[i - 1]) return i;
+        }
+        return -1;
+    }
+
+    // Accepts clients until the process is stopped, one thread per connection
+    private void serve(SocketAddress address, Path socketFile) throws IOException {
+        ServerSocketChannel server = socketFile != null
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+        if (socketFile != null) socketFile.toFile().deleteOnExit();
+        try (server) {
+            server.bind(address);
+            System.err.println("Listening on " + server.getLocalAddress());
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread thread = new Thread(() -> {
+                    try (client) {
+                        session(Channels.newInputStream(client), Channels.newOutputStream(client));
+                    } catch (IOException e) {
+                        System.err.println("Client error: " + e.getMessage());
+                    }
+                }, "lookup_service client");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    // Answers request lines until end of input or "quit"
+    void session(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII));
+        PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(output, StandardCharsets.US_ASCII), 1 << 16));
+        int[] batch = new int[16];
+        StringBuilder response = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (line.equals("quit")) break;
+            if (line.equals("stats")) {
+                writer.print(stats.report(n));
+                writer.flush();
+                continue;
+            }
+
+            long start = System.nanoTime();
+            int count = 0;
+            boolean valid = true;
+            for (String token : line.split("[\\s,]+")) {
+                if (token.isEmpty()) continue;
+                if (count == batch.length) batch = Arrays.copyOf(batch, count * 2);
+                try {
+                    batch[count++] = Integer.parseInt(token);
+                } catch (NumberFormatException e) {
+                    valid = false;
+                    break;
+                }
+            }
+            if (!valid) {
+                writer.println("error: keys must be integers");
+                writer.flush();
+                continue;
+            }
+
+            response.setLength(0);
+            int found = lookup(batch, count, response);
+            stats.record(System.nanoTime() - start, count, found);
+            writer.append(response);
+            writer.flush();
+        }
+        writer.flush();
+    }
+
+    // Appends one answer line per key in request order; returns how many keys were found
+    int lookup(int[] batch, int count, StringBuilder out) {
+        int[] index = new int[count];
+        if (count == 1) {
+            index[0] = lowerBound(batch[0], 0, n);
+        } else {
+            // Sort (key, request position) pairs, then search them in key order
+            int[] sorted = Arrays.copyOf(batch, count);
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) order[i] = i;
+            adaptive_merge_sort.sort(sorted, order, 0, count);
+            int from = 0;
+            for (int i = 0; i < count; i++) {
+                int pos = i > 0 && sorted[i] == sorted[i - 1] ? from : gallop(sorted[i], from);
+                index[(int) order[i]] = pos;
+                from = pos;
+            }
+        }
+
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            int pos = index[i];
+            out.append(batch[i]).append(' ');
+            if (pos < n && keys[pos] == batch[i]) {
+                out.append(pos).append(' ').append(store.labelText(labels[pos]));
+                found++;
+            } else {
+                out.append(-1);
+            }
+            out.append(System.lineSeparator());
+        }
+        return found;
+    }
+
+    // First position in [lo, hi) whose key is >= target, hi if there is none
+    private int lowerBound(int target, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < target) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Lower bound for a target known to be >= keys[from - 1]: doubles the step from
+    // 'from' until it passes the target, then binary searches the last step
+    private int gallop(int target, int from) {
+        if (from >= n || keys[from] >= target) return from;
+        int lo = from, step = 1;
+        while (lo + step < n && keys[lo + step] < target) {
+            lo += step;
+            step <<= 1;
+        }
+        return lowerBound(target, lo + 1, Math.min(n, lo + step));
+    }
+
+    private void saveReport(File file) {
+        if (stats.requests() == 0) return;
+        file.getParentFile().mkdirs();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.print(stats.report(n));
+            System.err.println("Report saved to: " + file.getPath());
+        } catch (IOException e) {
+            System.err.println("Error writing report: " + e.getMessage());
+        }
+    }
+
+    // Request counters and log-linear latency histograms (about 3% resolution)
+    static final class Stats {
+        private static final int SUB_BITS = 5;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+        private final long started = System.nanoTime();
+        private final long[] requestNanos = new long[BUCKETS];
+        private final long[] keyNanos = new long[BUCKETS];
+        private final long[] singleKeyNanos = new long[BUCKETS]; // requests of exactly one key
+        private long requests, singleKeyRequests, lookups, found, busyNanos, maxRequestNanos;
+
+        synchronized void record(long nanos, int keys, int hits) {
+            requests++;
+            lookups += keys;
+            found += hits;
+            busyNanos += nanos;
+            maxRequestNanos = Math.max(maxRequestNanos, nanos);
+            requestNanos[bucket(nanos)]++;
+            // Every key of a batch is charged an equal share of the batch time
+            if (keys > 0) keyNanos[bucket(nanos / keys)] += keys;
+            if (keys == 1) {
+                singleKeyRequests++;
+                singleKeyNanos[bucket(nanos)]++;
+            }
+        }
+
+        synchronized long requests() {
+            return requests;
+        }
+
+        synchronized String report(int rows) {
+            double elapsed = (System.nanoTime() - started) / 1e9;
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Rows: %d%n", rows));
+            sb.append(String.format("Requests: %d, keys: %d, found: %d (%.1f keys/request)%n",
+                    requests, lookups, found, requests > 0 ? (double) lookups / requests : 0.0));
+            sb.append(String.format("Uptime: %.1f s, busy: %.1f ms%n", elapsed, busyNanos / 1e6));
+            sb.append(String.format("Throughput: %.0f keys/s of busy time, %.0f keys/s of uptime%n",
+                    busyNanos > 0 ? lookups / (busyNanos / 1e9) : 0.0, elapsed > 0 ? lookups / elapsed : 0.0));
+            sb.append(String.format("Per key, batch-averaged:  p50 %s  p99 %s%n",
+                    format(percentile(keyNanos, lookups, 0.50)), format(percentile(keyNanos, lookups, 0.99))));
+            if (singleKeyRequests > 0) {
+                sb.append(String.format("Single-key requests (%d): p50 %s  p99 %s%n", singleKeyRequests,
+                        format(percentile(singleKeyNanos, singleKeyRequests, 0.50)),
+                        format(percentile(singleKeyNanos, singleKeyRequests, 0.99))));
+            }
+            sb.append(String.format("Per request: p50 %s  p99 %s  max %s%n",
+                    format(Math.min(maxRequestNanos, percentile(requestNanos, requests, 0.50))),
+                    format(Math.min(maxRequestNanos, percentile(requestNanos, requests, 0.99))),
+                    format(maxRequestNanos)));
+            return sb.toString();
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB) return (int) Math.max(0, value);
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return (exponent - SUB_BITS + 1) * SUB + (int) ((value >>> (exponent - SUB_BITS)) & (SUB - 1));
+        }
+
+        // Smallest value of a bucket; the inverse of bucket()
+        private static long lowest(int bucket) {
+            if (bucket < SUB) return bucket;
+            int exponent = bucket / SUB + SUB_BITS - 1;
+            return (long) (SUB + bucket % SUB) << (exponent - SUB_BITS);
+        }
+
+        // Upper edge of the bucket holding the q-th value
+        private static long percentile(long[] histogram, long total, double q) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank) return i + 1 < histogram.length ? lowest(i + 1) - 1 : lowest(i);
+            }
+            return lowest(histogram.length - 1);
+        }
+
+        private static String format(long nanos) {
+            if (nanos < 10_000) return nanos + " ns";
+            if (nanos < 10_000_000) return String.format("%.1f us", nanos / 1e3);
+            return String.format("%.1f ms", nanos / 1e6);
+        }
+    }
+}
@@ -1,44 +1,196 @@
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
 
 public class merge_sort {
-    private static class DataEntry {
-        int number;
-        String text;
+    private static final String USAGE = "Usage: java merge_sort <input_file> [--external[=<budget_mb>]]"
+            + " [--pipeline[=<chunk_rows>]] [--adaptive | --parallel[=<threads>]] [--cutoff=<rows>] | [--composite]"
+            + " [--duplicates=report|keep-first|keep-last] | [--merge-into=<sorted_output>]";
 
-        DataEntry(int number, String text) {
-            this.number = number;
-            this.text = text;
+    // Command line options after the input file name
+    private static class Options {
+        String inputFile;
+        long externalBudgetMb = -1;
+        int pipelineRows;
+        boolean adaptive;
+        boolean composite;
+        duplicate_filter.Policy duplicates;
+        String mergeInto; // existing sorted output the input rows are merged into
+        int parallelism;
+        int cutoff = parallel_merge_sort.DEFAULT_CUTOFF;
+        boolean cutoffSet;
+
+        static Options parse(String[] args) {
+            if (args.length < 1) return null;
+            Options options = new Options();
+            options.inputFile = args[0];
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--external")) {
+                    options.externalBudgetMb = external_merge_sort.DEFAULT_BUDGET_MB;
+                } else if (arg.startsWith("--external=")) {
+                    options.externalBudgetMb = Long.parseLong(value(arg));
+                } else if (arg.equals("--pipeline")) {
+                    options.pipelineRows = pipelined_merge_sort.DEFAULT_CHUNK_ROWS;
+                } else if (arg.startsWith("--pipeline=")) {
+                    options.pipelineRows = Integer.parseInt(value(arg));
+                    if (options.pipelineRows < 1) throw new NumberFormatException("chunk size must be positive");
+                } else if (arg.equals("--adaptive")) {
+                    options.adaptive = true;
+                } else if (arg.startsWith("--merge-into=")) {
+                    options.mergeInto = value(arg);
+                } else if (arg.startsWith("--duplicates=")) {
+                    options.duplicates = duplicate_filter.Policy.fromOption(value(arg));
+                } else if (arg.equals("--composite")) {
+                    options.composite = true;
+                } else if (arg.equals("--parallel")) {
+                    options.parallelism = Runtime.getRuntime().availableProcessors();
+                } else if (arg.startsWith("--parallel=")) {
+                    options.parallelism = Integer.parseInt(value(arg));
+                } else if (arg.startsWith("--cutoff=")) {
+                    options.cutoff = Integer.parseInt(value(arg));
+                    options.cutoffSet = true;
+                } else {
+                    return null;
+                }
+            }
+            if (options.externalBudgetMb < -1 || options.parallelism < 0 || options.cutoff < 1) {
+                throw new NumberFormatException("option values must be positive");
+            }
+            boolean external = options.externalBudgetMb >= 0;
+            boolean streaming = external || options.pipelineRows > 0;
+            // Options a mode would silently ignore are rejected, so a run is always the variant asked for
+            if (external && (options.pipelineRows > 0 || options.parallelism > 0)) return null;
+            if (options.adaptive && (streaming || options.parallelism > 0)) return null;
+            if (options.cutoffSet && (options.parallelism == 0 || streaming)) return null;
+            if (options.composite && (streaming || options.adaptive || options.parallelism > 0)) {
+                return null;
+            }
+            if (options.mergeInto != null && (streaming || options.composite || options.adaptive
+                    || options.parallelism > 0 || options.duplicates != null)) {
+                return null;
+            }
+            return options;
         }
 
-        @Override
-        public String toString() {
-            return number + "," + text;
+        private static String value(String arg) {
+            return arg.substring(arg.indexOf('=') + 1);
         }
     }
 
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java merge_sort <input_file>");
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid option value: " + e.getMessage());
+            return;
+        }
+        if (options == null) {
+            System.out.println(USAGE);
             return;
         }
 
         long startTime = System.currentTimeMillis();
 
         try {
+            if (options.externalBudgetMb >= 0) {
+                // Sort runs within the memory budget, spill them and merge from disk
+                ensureOutputDirectoryExists();
+                external_merge_sort.Report report = external_merge_sort.sort(
+                        new File("../datasets/" + options.inputFile), options.externalBudgetMb << 20,
+                        "../outputs/merge_sort_", options.duplicates);
+                System.out.println("Output saved to: " + report.outputFile);
+                System.out.println("Runs: " + report.runs + ", merge passes: " + report.mergePasses
+                        + ", bytes spilled: " + report.bytesSpilled);
+                if (report.duplicates != null) {
+                    report.duplicates.report("../outputs/merge_sort_" + report.rows + "_duplicates.txt");
+                }
+
+                long endTime = System.currentTimeMillis();
+                System.out.println("Execution time (ms): " + (endTime - startTime));
+                return;
+            }
+
+            if (options.mergeInto != null) {
+                // Sort only the new rows and merge them into the existing sorted output
+                ensureOutputDirectoryExists();
+                delta_merge.Report report = delta_merge.merge(new File("../outputs/" + options.mergeInto),
+                        new File("../datasets/" + options.inputFile), "../outputs/merge_sort_");
+                System.out.println("Output saved to: " + report.outputFile);
+                System.out.println("Merged " + report.deltaRows + " new rows into " + report.existingRows
+                        + " (delta sorted in " + report.sortMs + " ms, merge pass " + report.mergeMs + " ms)");
+
+                long endTime = System.currentTimeMillis();
+                System.out.println("Execution time (ms): " + (endTime - startTime));
+                return;
+            }
+
+            if (options.pipelineRows > 0) {
+                // Sort chunks on worker threads while the reader is still parsing the file
+                ensureOutputDirectoryExists();
+                int workers = options.parallelism > 0
+                        ? options.parallelism : Runtime.getRuntime().availableProcessors();
+                pipelined_merge_sort.Report report = pipelined_merge_sort.sort(
+                        new File("../datasets/" + options.inputFile), "../outputs/merge_sort_",
+                        workers, options.pipelineRows, options.duplicates);
+                System.out.println("Output saved to: " + report.outputFile);
+                System.out.println("Chunks: " + report.chunks + ", read done at " + report.readMs
+                        + " ms, chunks sorted at " + report.sortedMs + " ms");
+                if (report.duplicates != null) {
+                    report.duplicates.report("../outputs/merge_sort_" + report.rows + "_duplicates.txt");
+                }
+
+                long endTime = System.currentTimeMillis();
+                System.out.println("Execution time (ms): " + (endTime - startTime));
+                return;
+            }
+
             // Read input file from ../datasets/
-            List<DataEntry> entries = readDataEntries(args[0]);
+            record_store entries = readDataEntries(options.inputFile);
             
             // Perform merge sort
+            if (op_counters.ENABLED) op_counters.start();
             if (entries.size() > 1) {
-                mergeSort(entries, 0, entries.size() - 1);
+                if (options.adaptive) {
+                    adaptive_merge_sort.sort(entries);
+                } else if (options.composite) {
+                    composite_key.sort(entries, composite_key.Algorithm.MERGE);
+                } else if (options.parallelism > 0) {
+                    parallel_merge_sort.sort(entries, options.parallelism, options.cutoff);
+                } else {
+                    mergeSort(entries, 0, entries.size() - 1);
+                }
+            }
+            if (op_counters.ENABLED) {
+                String variant = options.adaptive ? "adaptive" : options.parallelism > 0 ? "parallel"
+                        : options.composite ? "composite" : "classic";
+                // The merge moves rows but never swaps them
+                int counted = variant.equals("classic")
+                        ? op_counters.COMPARISONS | op_counters.MOVES | op_counters.DEPTH : op_counters.NONE;
+                op_counters.report("merge_sort", variant, options.inputFile, entries.size(), counted,
+                        options.parallelism == 0);
             }
             
-            // Write sorted output to ../outputs/
-            String outputFile = "../outputs/merge_sort_" + entries.size() + ".csv";
+            // Write sorted output to ../outputs/, binary datasets in binary
             ensureOutputDirectoryExists();
-            writeOutput(entries, outputFile);
+            String outputName = "../outputs/merge_sort_" + entries.size();
+            boolean binary = column_file.isColumnFile(new File("../datasets/" + options.inputFile));
+            duplicate_filter duplicates = null;
+            if (options.duplicates != null) {
+                // Duplicates are counted (and dropped) while the rows are written
+                String reportName = outputName + "_duplicates.txt";
+                if (options.duplicates != duplicate_filter.Policy.REPORT) outputName += "_dedup";
+                if (binary) {
+                    duplicates = duplicate_filter.compact(entries, options.duplicates);
+                } else {
+                    duplicates = duplicate_filter.writeCSV(entries, outputName + ".csv", options.duplicates);
+                }
+                duplicates.report(reportName);
+            }
+            if (binary) {
+                column_file.write(entries, new File(outputName + column_file.EXTENSION), 0);
+            } else if (duplicates == null) {
+                writeOutput(entries, outputName + ".csv");
+            }
             
             // Print execution time
             long endTime = System.currentTimeMillis();
@@ -56,72 +208,69 @@ public class merge_sort {
         }
     }
 
-    private static List<DataEntry> readDataEntries(String filename) throws IOException {
-        List<DataEntry> entries = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader("../datasets/" + filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    entries.add(new DataEntry(Integer.parseInt(parts[0]), parts[1]));
-                }
-            }
-        }
-        return entries;
+    private static record_store readDataEntries(String filename) throws IOException {
+        return csv_loader.load(new File("../datasets/" + filename));
     }
 
-    private static void writeOutput(List<DataEntry> entries, String filename) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            for (DataEntry entry : entries) {
-                writer.write(entry.toString());
-                writer.newLine();
-            }
-        }
+    static void writeOutput(record_store entries, String filename) throws IOException {
+        csv_writer.write(entries, filename);
     }
 
-    private static void mergeSort(List<DataEntry> entries, int left, int right) {
+    static void mergeSort(record_store entries, int left, int right) {
         if (left < right) {
+            if (op_counters.ENABLED) op_counters.enter();
             int mid = left + (right - left) / 2;
             mergeSort(entries, left, mid);
             mergeSort(entries, mid + 1, right);
             merge(entries, left, mid, right);
+            if (op_counters.ENABLED) op_counters.exit();
         }
     }
 
-    private static void merge(List<DataEntry> entries, int left, int mid, int right) {
+    private static void merge(record_store entries, int left, int mid, int right) {
+        int[] keys = entries.keys;
+        long[] labels = entries.labels;
         int n1 = mid - left + 1;
         int n2 = right - mid;
 
-        DataEntry[] L = new DataEntry[n1];
-        DataEntry[] R = new DataEntry[n2];
+        int[] leftKeys = new int[n1];
+        long[] leftLabels = new long[n1];
+        int[] rightKeys = new int[n2];
+        long[] rightLabels = new long[n2];
 
-        for (int i = 0; i < n1; i++) {
-            L[i] = entries.get(left + i);
-        }
-        for (int j = 0; j < n2; j++) {
-            R[j] = entries.get(mid + 1 + j);
-        }
+        System.arraycopy(keys, left, leftKeys, 0, n1);
+        System.arraycopy(labels, left, leftLabels, 0, n1);
+        System.arraycopy(keys, mid + 1, rightKeys, 0, n2);
+        System.arraycopy(labels, mid + 1, rightLabels, 0, n2);
 
         int i = 0, j = 0, k = left;
         while (i < n1 && j < n2) {
-            if (L[i].number <= R[j].number) {
-                entries.set(k, L[i]);
+            if (leftKeys[i] <= rightKeys[j]) {
+                keys[k] = leftKeys[i];
+                labels[k] = leftLabels[i];
                 i++;
             } else {
-                entries.set(k, R[j]);
+                keys[k] = rightKeys[j];
+                labels[k] = rightLabels[j];
                 j++;
             }
             k++;
         }
+        if (op_counters.ENABLED) {
+            op_counters.comparisons += i + j;
+            op_counters.moves += 2L * (n1 + n2); // copied out and written back
+        }
 
         while (i < n1) {
-            entries.set(k, L[i]);
+            keys[k] = leftKeys[i];
+            labels[k] = leftLabels[i];
             i++;
             k++;
         }
 
         while (j < n2) {
-            entries.set(k, R[j]);
+            keys[k] = rightKeys[j];
+            labels[k] = rightLabels[j];
             j++;
             k++;
         }
@@ -21,23 +21,10 @@ public class merge_sort_step {
     }
 
     private static List<DataEntry> readDataEntries(String filename, int startRow, int endRow) throws IOException {
-        List<DataEntry> entries = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader("../datasets/" + filename))) {
-            String line;
-            int currentRow = 0;
-            
-            while ((line = reader.readLine()) != null) {
-                currentRow++;
-                
-                if (currentRow >= startRow && currentRow <= endRow) {
-                    String[] parts = line.split(",");
-                    if (parts.length == 2) {
-                        entries.add(new DataEntry(Integer.parseInt(parts[0]), parts[1]));
-                    }
-                }
-                
-                if (currentRow > endRow) break;
-            }
+        record_store rows = csv_loader.loadRows(new File("../datasets/" + filename), startRow, endRow);
+        List<DataEntry> entries = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            entries.add(new DataEntry(rows.keys[i], rows.labelText(rows.labels[i])));
         }
         return entries;
     }
@@ -64,16 +51,19 @@ public class merge_sort_step {
         writeStep(entries, writer, "Initial Configuration", -1, -1);
     }
 
-    private static void merge_sort(List<DataEntry> entries, int left, int right, BufferedWriter writer) throws IOException {
+    // Writes a snapshot per merge to writer, or with --events only the merged ranges to events
+    private static void merge_sort(List<DataEntry> entries, int left, int right, BufferedWriter writer,
+                                   Writer events) throws IOException {
         if (left < right) {
             int mid = left + (right - left) / 2;
-            merge_sort(entries, left, mid, writer);
-            merge_sort(entries, mid + 1, right, writer);
-            merge(entries, left, mid, right, writer);
+            merge_sort(entries, left, mid, writer, events);
+            merge_sort(entries, mid + 1, right, writer, events);
+            merge(entries, left, mid, right, writer, events);
         }
     }
 
-    private static void merge(List<DataEntry> entries, int left, int mid, int right, BufferedWriter writer) throws IOException {
+    private static void merge(List<DataEntry> entries, int left, int mid, int right, BufferedWriter writer,
+                              Writer events) throws IOException {
         int n1 = mid - left + 1;
         int n2 = right - mid;
 
@@ -111,14 +101,42 @@ public class merge_sort_step {
             k++;
         }
 
-        writeStep(entries, writer, "Merge Complete", left, right);
+        if (events != null) {
+            stepCounter++;
+            events.write("m " + left + " " + mid + " " + right + "\n");
+        } else {
+            writeStep(entries, writer, "Merge Complete", left, right);
+        }
+    }
+
+    // Writes the initial rows and one line per merge, for trace_replay
+    private static void writeEventLog(List<DataEntry> entries, String inputFile, int startRow, int endRow)
+            throws IOException {
+        String outputFile = "../outputs/merge_sort_step_" + startRow + "_" + endRow + ".log";
+        long startTime, endTime;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile), 1 << 16)) {
+            writer.write("# input ../datasets/" + inputFile + ", rows " + startRow + " to " + endRow + "\n");
+            trace_replay.writeHeader(writer, "merge_sort_step", 1, entries);
+            stepCounter = 1;
+            startTime = System.nanoTime();
+            if (entries.size() > 1) {
+                merge_sort(entries, 0, entries.size() - 1, null, writer);
+            }
+            endTime = System.nanoTime();
+        }
+
+        System.out.println("Event log saved to: " + outputFile);
+        System.out.println("Elements processed: " + entries.size());
+        System.out.println("Total Steps: " + stepCounter);
+        System.out.println("Time: " + String.format("%.6f", (endTime - startTime) / 1_000_000.0) + " ms");
     }
 
     public static void main(String[] args) {
-        if (args.length != 3) {
-            System.out.println("Usage: java merge_sort_step <input_file> <start_row> <end_row>");
+        if (args.length < 3 || args.length > 4 || (args.length == 4 && !args[3].equals("--events"))) {
+            System.out.println("Usage: java merge_sort_step <input_file> <start_row> <end_row> [--events]");
             return;
         }
+        boolean eventLog = args.length == 4; // --events: log merged ranges instead of whole arrays
         
         try {
             // Ensure outputs directory exists
@@ -133,6 +151,11 @@ public class merge_sort_step {
             
             double executionTime = 0.0;
             
+            if (eventLog) {
+                writeEventLog(entries, inputFile, startRow, endRow);
+                return;
+            }
+
             try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
                 writer.write("=== MERGE SORT ALGORITHM ANALYSIS ===\n");
                 writer.write("Input File: ../datasets/" + inputFile + "\n");
@@ -145,7 +168,7 @@ public class merge_sort_step {
                 if (entries.size() > 1) {
                     writer.write("--- SORTING PROCESS BEGINS ---\n\n");
                     long startTime = System.nanoTime();
-                    merge_sort(entries, 0, entries.size() - 1, writer);
+                    merge_sort(entries, 0, entries.size() - 1, writer, null);
                     long endTime = System.nanoTime();
                     executionTime = (endTime - startTime) / 1_000_000.0;
                     writer.write("--- SORTING PROCESS COMPLETE ---\n\n");
@@ -0,0 +1,160 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Operation counters for the classic kernels (quick_sort.quickSort/partition,
+ * merge_sort.mergeSort/merge and binary_search.binarySearch), switched on with
+ *
+ *   java -Dmetrics=true quick_sort dataset_y.csv
+ *
+ * ENABLED is a static final read once at class load, so with metrics off every
+ * "if (op_counters.ENABLED)" block is dead code the JIT removes. Kernels count in
+ * locals where they can and add to the totals once per call. A run's report goes
+ * to ../outputs/metrics_<program>_<variant>_<rows>.json and is appended to
+ * ../outputs/metrics.csv, together with the bytes allocated by the sorting
+ * thread and the collections that happened while it ran.
+ *
+ * Only the classic kernels are instrumented, each for the counters it keeps (see
+ * the masks below); every other counter, and all of them for other variants, is
+ * written as null (JSON) or n/a (CSV) instead of zeros. allocated_bytes is
+ * measured on the calling thread only, so it is also left out for variants that
+ * sort on fork/join worker threads.
+ */
+public class op_counters {
+    static final boolean ENABLED = Boolean.getBoolean("metrics");
+
+    private static final String CSV_HEADER = "program,variant,dataset,rows,time_ms,comparisons,swaps,moves,"
+            + "max_depth,probes,allocated_bytes,gc_count,gc_time_ms,comparisons_per_n_log2_n";
+
+    // Which counters a kernel keeps, for report()
+    static final int NONE = 0, COMPARISONS = 1, SWAPS = 2, MOVES = 4, DEPTH = 8, PROBES = 16;
+
+    static long comparisons;
+    static long swaps;
+    static long moves;
+    static long probes;     // binary search probes (one three-way comparison each)
+    static int depth;
+    static int maxDepth;
+
+    private static long startNanos, elapsedNanos;
+    private static long startAllocated, allocated;
+    private static long startGcCount, gcCount;
+    private static long startGcTime, gcTime;
+
+    static void enter() {
+        if (++depth > maxDepth) maxDepth = depth;
+    }
+
+    static void exit() {
+        depth--;
+    }
+
+    // Resets the counters and snapshots time, allocation and GC before the measured section
+    static void start() {
+        comparisons = swaps = moves = probes = 0;
+        depth = maxDepth = 0;
+        startGcCount = gcCount();
+        startGcTime = gcTime();
+        startAllocated = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    static void stop() {
+        elapsedNanos = System.nanoTime() - startNanos;
+        allocated = allocatedBytes() - startAllocated;
+        gcCount = gcCount() - startGcCount;
+        gcTime = gcTime() - startGcTime;
+    }
+
+    // Stops the measurement and writes the report, printing where it went. 'counted' is the
+    // mask of counters the variant's kernel updates, 'singleThreaded' whether all of its
+    // work ran on the calling thread (whose allocations are the ones measured)
+    static void report(String program, String variant, String dataset, long rows, int counted,
+                       boolean singleThreaded) {
+        stop();
+        try {
+            File json = writeReport(program, variant, dataset, rows, counted, singleThreaded);
+            System.out.println("Metrics saved to: " + json.getPath());
+        } catch (IOException e) {
+            System.err.println("Error writing metrics: " + e.getMessage());
+        }
+    }
+
+    // Writes the JSON report and appends the CSV row; returns the JSON file
+    static File writeReport(String program, String variant, String dataset, long rows, int counted,
+                            boolean singleThreaded) throws IOException {
+        File dir = new File("../outputs");
+        dir.mkdirs();
+        double timeMs = elapsedNanos / 1_000_000.0;
+        double nLogN = rows > 1 ? rows * (Math.log(rows) / Math.log(2)) : 1;
+        boolean allocationKnown = singleThreaded && allocated >= 0;
+        boolean comparisonsKnown = (counted & COMPARISONS) != 0;
+        String ratio = String.format("%.4f", comparisons / nLogN);
+
+        File json = new File(dir, "metrics_" + program + "_" + variant + "_" + rows + ".json");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(json))) {
+            writer.println("{");
+            writer.printf("  \"program\": \"%s\",%n", program);
+            writer.printf("  \"variant\": \"%s\",%n", variant);
+            writer.printf("  \"dataset\": \"%s\",%n", dataset.replace("\\", "\\\\").replace("\"", "\\\""));
+            writer.printf("  \"rows\": %d,%n", rows);
+            writer.printf("  \"time_ms\": %.3f,%n", timeMs);
+            writer.printf("  \"comparisons\": %s,%n", json(comparisons, comparisonsKnown));
+            writer.printf("  \"swaps\": %s,%n", json(swaps, (counted & SWAPS) != 0));
+            writer.printf("  \"moves\": %s,%n", json(moves, (counted & MOVES) != 0));
+            writer.printf("  \"max_depth\": %s,%n", json(maxDepth, (counted & DEPTH) != 0));
+            writer.printf("  \"probes\": %s,%n", json(probes, (counted & PROBES) != 0));
+            writer.printf("  \"allocated_bytes\": %s,%n", json(allocated, allocationKnown));
+            writer.printf("  \"gc_count\": %d,%n", gcCount);
+            writer.printf("  \"gc_time_ms\": %d,%n", gcTime);
+            writer.printf("  \"comparisons_per_n_log2_n\": %s%n", comparisonsKnown ? ratio : "null");
+            writer.println("}");
+        }
+
+        File csv = new File(dir, "metrics.csv");
+        boolean header = !csv.exists() || csv.length() == 0;
+        try (PrintWriter writer = new PrintWriter(new FileWriter(csv, true))) {
+            if (header) writer.println(CSV_HEADER);
+            writer.printf("%s,%s,%s,%d,%.3f,%s,%s,%s,%s,%s,%s,%d,%d,%s%n", program, variant, dataset, rows,
+                    timeMs, csv(comparisons, comparisonsKnown), csv(swaps, (counted & SWAPS) != 0),
+                    csv(moves, (counted & MOVES) != 0), csv(maxDepth, (counted & DEPTH) != 0),
+                    csv(probes, (counted & PROBES) != 0), csv(allocated, allocationKnown), gcCount, gcTime,
+                    comparisonsKnown ? ratio : "n/a");
+        }
+        return json;
+    }
+
+    private static String json(long value, boolean known) {
+        return known ? String.valueOf(value) : "null";
+    }
+
+    private static String csv(long value, boolean known) {
+        return known ? String.valueOf(value) : "n/a";
+    }
+
+    // Bytes allocated so far by the current thread, -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+}
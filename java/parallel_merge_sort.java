@@ -0,0 +1,194 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join merge sort for merge_sort --parallel. Ranges are split down to a
+ * sequential cutoff and sorted by ping-ponging between the data arrays and one
+ * auxiliary buffer allocated up front; large merges are themselves split by binary
+ * search so the top levels also run in parallel. Merges keep the left element on
+ * equal keys, so the output is identical to merge_sort.mergeSort.
+ */
+public class parallel_merge_sort {
+    static final int DEFAULT_CUTOFF = 8192;
+    private static final int INSERTION_CUTOFF = 32;
+
+    static void sort(record_store store, int parallelism, int cutoff) {
+        int n = store.size();
+        if (n < 2) return;
+
+        int[] auxKeys = new int[n];
+        long[] auxLabels = new long[n];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new SortTask(store.keys, store.labels, auxKeys, auxLabels, 0, n, false,
+                    Math.max(cutoff, INSERTION_CUTOFF)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Sorts the whole store on the calling thread, for callers that run their own threads
+    static void sortSequential(record_store store) {
+        int n = store.size();
+        if (n < 2) return;
+        sortSequential(store.keys, store.labels, new int[n], new long[n], 0, n, false);
+    }
+
+    // Sorts [lo, hi) of a; the result ends up in a, or in b when toAux is set
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] aKeys, bKeys;
+        private final long[] aLabels, bLabels;
+        private final int lo, hi, cutoff;
+        private final boolean toAux;
+
+        SortTask(int[] aKeys, long[] aLabels, int[] bKeys, long[] bLabels, int lo, int hi, boolean toAux, int cutoff) {
+            this.aKeys = aKeys;
+            this.aLabels = aLabels;
+            this.bKeys = bKeys;
+            this.bLabels = bLabels;
+            this.lo = lo;
+            this.hi = hi;
+            this.toAux = toAux;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= cutoff) {
+                sortSequential(aKeys, aLabels, bKeys, bLabels, lo, hi, toAux);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            // Children leave their halves in the other array, the merge brings them back
+            invokeAll(new SortTask(aKeys, aLabels, bKeys, bLabels, lo, mid, !toAux, cutoff),
+                    new SortTask(aKeys, aLabels, bKeys, bLabels, mid, hi, !toAux, cutoff));
+            if (toAux) {
+                new MergeTask(aKeys, aLabels, lo, mid, mid, hi, bKeys, bLabels, lo, cutoff).compute();
+            } else {
+                new MergeTask(bKeys, bLabels, lo, mid, mid, hi, aKeys, aLabels, lo, cutoff).compute();
+            }
+        }
+    }
+
+    // Merges src[lo1, hi1) and src[lo2, hi2) into dst starting at out
+    private static final class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] srcKeys, dstKeys;
+        private final long[] srcLabels, dstLabels;
+        private final int lo1, hi1, lo2, hi2, out, cutoff;
+
+        MergeTask(int[] srcKeys, long[] srcLabels, int lo1, int hi1, int lo2, int hi2,
+                  int[] dstKeys, long[] dstLabels, int out, int cutoff) {
+            this.srcKeys = srcKeys;
+            this.srcLabels = srcLabels;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dstKeys = dstKeys;
+            this.dstLabels = dstLabels;
+            this.out = out;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1, n2 = hi2 - lo2;
+            if (n1 + n2 <= cutoff) {
+                merge(srcKeys, srcLabels, lo1, hi1, lo2, hi2, dstKeys, dstLabels, out);
+                return;
+            }
+
+            // Split the longer run in half and find the matching split in the other one.
+            // Equal keys from the left run always land in front of those from the right run.
+            int m1, m2;
+            if (n1 >= n2) {
+                m1 = (lo1 + hi1) >>> 1;
+                m2 = lowerBound(srcKeys, lo2, hi2, srcKeys[m1]);
+            } else {
+                m2 = (lo2 + hi2) >>> 1;
+                m1 = upperBound(srcKeys, lo1, hi1, srcKeys[m2]);
+            }
+            int rightOut = out + (m1 - lo1) + (m2 - lo2);
+            invokeAll(new MergeTask(srcKeys, srcLabels, lo1, m1, lo2, m2, dstKeys, dstLabels, out, cutoff),
+                    new MergeTask(srcKeys, srcLabels, m1, hi1, m2, hi2, dstKeys, dstLabels, rightOut, cutoff));
+        }
+    }
+
+    // Same ping-pong recursion without forking, with insertion sort on small ranges
+    private static void sortSequential(int[] aKeys, long[] aLabels, int[] bKeys, long[] bLabels,
+                                       int lo, int hi, boolean toAux) {
+        if (hi - lo <= INSERTION_CUTOFF) {
+            insertionSort(aKeys, aLabels, lo, hi);
+            if (toAux) {
+                System.arraycopy(aKeys, lo, bKeys, lo, hi - lo);
+                System.arraycopy(aLabels, lo, bLabels, lo, hi - lo);
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        sortSequential(aKeys, aLabels, bKeys, bLabels, lo, mid, !toAux);
+        sortSequential(aKeys, aLabels, bKeys, bLabels, mid, hi, !toAux);
+        if (toAux) {
+            merge(aKeys, aLabels, lo, mid, mid, hi, bKeys, bLabels, lo);
+        } else {
+            merge(bKeys, bLabels, lo, mid, mid, hi, aKeys, aLabels, lo);
+        }
+    }
+
+    private static void insertionSort(int[] keys, long[] labels, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            int key = keys[i];
+            long label = labels[i];
+            int j = i - 1;
+            while (j >= lo && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                labels[j + 1] = labels[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            labels[j + 1] = label;
+        }
+    }
+
+    private static void merge(int[] srcKeys, long[] srcLabels, int i, int hi1, int j, int hi2,
+                              int[] dstKeys, long[] dstLabels, int k) {
+        while (i < hi1 && j < hi2) {
+            if (srcKeys[i] <= srcKeys[j]) {
+                dstKeys[k] = srcKeys[i];
+                dstLabels[k++] = srcLabels[i++];
+            } else {
+                dstKeys[k] = srcKeys[j];
+                dstLabels[k++] = srcLabels[j++];
+            }
+        }
+        System.arraycopy(srcKeys, i, dstKeys, k, hi1 - i);
+        System.arraycopy(srcLabels, i, dstLabels, k, hi1 - i);
+        k += hi1 - i;
+        System.arraycopy(srcKeys, j, dstKeys, k, hi2 - j);
+        System.arraycopy(srcLabels, j, dstLabels, k, hi2 - j);
+    }
+
+    // First index in [lo, hi) whose key is >= key
+    private static int lowerBound(int[] keys, int lo, int hi, int key) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // First index in [lo, hi) whose key is > key
+    private static int upperBound(int[] keys, int lo, int hi, int key) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * Checks that merge_sort --parallel writes exactly what the sequential merge sort
+ * writes, equal keys included, for several thread counts and cutoffs:
+ *
+ *   java parallel_merge_sort_check [rows]
+ */
+public class parallel_merge_sort_check {
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store input = sort_check.generate(n);
+        record_store expected = sort_check.reference(input);
+
+        int[][] cases = {{1, parallel_merge_sort.DEFAULT_CUTOFF}, {4, parallel_merge_sort.DEFAULT_CUTOFF}, {4, 64},
+                {3, 1}};
+        for (int[] c : cases) {
+            record_store actual = sort_check.copy(input);
+            parallel_merge_sort.sort(actual, c[0], c[1]);
+            sort_check.expectIdentical("parallel merge sort, " + c[0] + " threads, cutoff " + c[1], expected, actual);
+        }
+        record_store actual = sort_check.copy(input);
+        parallel_merge_sort.sortSequential(actual);
+        sort_check.expectIdentical("parallel merge sort on the calling thread", expected, actual);
+    }
+}
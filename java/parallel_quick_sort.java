@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join quick sort for quick_sort --parallel. Both sides of every partition
+ * are handed to worker tasks. While a single range is large enough to keep all
+ * workers busy on its own, it is partitioned in parallel: blocks count their keys
+ * below, equal to and above the pivot, scatter into a shared buffer at their
+ * prefix offsets and are copied back. Small ranges use the intro_quick_sort kernel.
+ */
+public class parallel_quick_sort {
+    static final int SEQUENTIAL_THRESHOLD = 1 << 14;
+    private static final int MIN_PARALLEL_PARTITION = 1 << 16;
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    static void sort(record_store store, int parallelism, intro_quick_sort.Pivot pivot, int cutoff) {
+        int n = store.size();
+        if (n < 2) return;
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Context context = new Context(store, pivot, cutoff, parallelism);
+            pool.invoke(new SortTask(context, 0, n - 1, intro_quick_sort.depthLimit(n)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // State shared by every task of one sort
+    private static final class Context {
+        final record_store store;
+        final intro_quick_sort.Pivot pivot;
+        final int cutoff;
+        final int blocks;
+        final int parallelPartitionMin;
+        int[] auxKeys;
+        long[] auxLabels;
+
+        Context(record_store store, intro_quick_sort.Pivot pivot, int cutoff, int parallelism) {
+            this.store = store;
+            this.pivot = pivot;
+            this.cutoff = cutoff;
+            this.blocks = parallelism * BLOCKS_PER_THREAD;
+            this.parallelPartitionMin = Math.max(MIN_PARALLEL_PARTITION, store.size() / parallelism);
+        }
+
+        // Scatter buffer for parallel partitions, only allocated when a range is big enough to need it
+        synchronized void ensureAux() {
+            if (auxKeys == null) {
+                auxKeys = new int[store.size()];
+                auxLabels = new long[store.size()];
+            }
+        }
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Context context;
+        private final int low, high, depthLimit;
+
+        SortTask(Context context, int low, int high, int depthLimit) {
+            this.context = context;
+            this.low = low;
+            this.high = high;
+            this.depthLimit = depthLimit;
+        }
+
+        @Override
+        protected void compute() {
+            record_store store = context.store;
+            int size = high - low + 1;
+            if (size <= SEQUENTIAL_THRESHOLD) {
+                intro_quick_sort.sortRange(store, low, high, depthLimit, context.pivot, context.cutoff);
+                return;
+            }
+            if (depthLimit == 0) {
+                intro_quick_sort.heapSort(store, low, high);
+                return;
+            }
+
+            int pivotIndex = context.pivot.choose(store.keys, low, high);
+            long bounds = size >= context.parallelPartitionMin
+                    ? parallelPartition(context, low, high, store.keys[pivotIndex])
+                    : intro_quick_sort.partition3(store, low, high, pivotIndex);
+            int lt = (int) (bounds >>> 32);
+            int gt = (int) bounds;
+
+            invokeAll(new SortTask(context, low, lt - 1, depthLimit - 1),
+                    new SortTask(context, gt + 1, high, depthLimit - 1));
+        }
+    }
+
+    // Three-way partition of [low, high] using all workers; returns (lt << 32) | gt like partition3
+    private static long parallelPartition(Context context, int low, int high, int pivot) {
+        context.ensureAux();
+        int[] keys = context.store.keys;
+        long[] labels = context.store.labels;
+        int[] auxKeys = context.auxKeys;
+        long[] auxLabels = context.auxLabels;
+
+        int size = high - low + 1;
+        int blocks = Math.min(context.blocks, size);
+        int blockSize = (size + blocks - 1) / blocks;
+        blocks = (size + blockSize - 1) / blockSize;
+        int[] less = new int[blocks];
+        int[] equal = new int[blocks];
+
+        // Count each block's keys below and equal to the pivot
+        forEachBlock(blocks, b -> {
+            int from = low + b * blockSize, to = Math.min(high + 1, from + blockSize);
+            int l = 0, e = 0;
+            for (int i = from; i < to; i++) {
+                int key = keys[i];
+                if (key < pivot) l++;
+                else if (key == pivot) e++;
+            }
+            less[b] = l;
+            equal[b] = e;
+        });
+
+        int totalLess = 0, totalEqual = 0;
+        for (int b = 0; b < blocks; b++) {
+            totalLess += less[b];
+            totalEqual += equal[b];
+        }
+
+        // Turn the counts into each block's starting offset in the three regions
+        int[] lessAt = new int[blocks];
+        int[] equalAt = new int[blocks];
+        int[] greaterAt = new int[blocks];
+        int nextLess = low, nextEqual = low + totalLess, nextGreater = low + totalLess + totalEqual;
+        for (int b = 0; b < blocks; b++) {
+            int from = low + b * blockSize, to = Math.min(high + 1, from + blockSize);
+            lessAt[b] = nextLess;
+            equalAt[b] = nextEqual;
+            greaterAt[b] = nextGreater;
+            nextLess += less[b];
+            nextEqual += equal[b];
+            nextGreater += (to - from) - less[b] - equal[b];
+        }
+
+        forEachBlock(blocks, b -> {
+            int from = low + b * blockSize, to = Math.min(high + 1, from + blockSize);
+            int l = lessAt[b], e = equalAt[b], g = greaterAt[b];
+            for (int i = from; i < to; i++) {
+                int key = keys[i];
+                int target = key < pivot ? l++ : (key == pivot ? e++ : g++);
+                auxKeys[target] = key;
+                auxLabels[target] = labels[i];
+            }
+        });
+
+        forEachBlock(blocks, b -> {
+            int from = low + b * blockSize, to = Math.min(high + 1, from + blockSize);
+            System.arraycopy(auxKeys, from, keys, from, to - from);
+            System.arraycopy(auxLabels, from, labels, from, to - from);
+        });
+
+        int lt = low + totalLess;
+        int gt = lt + totalEqual - 1;
+        return ((long) lt << 32) | (gt & 0xFFFFFFFFL);
+    }
+
+    private interface BlockAction {
+        void run(int block);
+    }
+
+    // Runs one subtask per block in the current pool and waits for all of them
+    private static void forEachBlock(int blocks, BlockAction action) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(blocks);
+        for (int b = 0; b < blocks; b++) {
+            int block = b;
+            tasks.add(ForkJoinTask.adapt(() -> action.run(block)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+}
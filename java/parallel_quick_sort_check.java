@@ -0,0 +1,29 @@
+/**
+ * Checks quick_sort --parallel against merge_sort for several thread counts and
+ * pivots on random, sorted and few-unique input, large enough that the top levels
+ * are partitioned in parallel. Like every quicksort it is not stable, so each key
+ * must carry the same labels but in any order:
+ *
+ *   java parallel_quick_sort_check [rows]
+ */
+public class parallel_quick_sort_check {
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store random = sort_check.generate(n);
+        String[] names = {"random", "sorted", "few unique"};
+        record_store[] inputs = {random, sort_check.reference(random), sort_check.generate(n, 3, sort_check.SEED)};
+        intro_quick_sort.Pivot[] pivots = {intro_quick_sort.Pivot.MEDIAN_OF_3, intro_quick_sort.Pivot.LAST};
+
+        for (int i = 0; i < inputs.length; i++) {
+            record_store expected = sort_check.reference(inputs[i]);
+            for (int threads : new int[] {1, 2, 4}) {
+                for (intro_quick_sort.Pivot pivot : pivots) {
+                    record_store actual = sort_check.copy(inputs[i]);
+                    parallel_quick_sort.sort(actual, threads, pivot, intro_quick_sort.DEFAULT_CUTOFF);
+                    sort_check.expectSameRows("parallel quick sort, " + threads + " threads, " + pivot.option
+                            + " pivot, " + names[i] + " input", expected, actual);
+                }
+            }
+        }
+    }
+}
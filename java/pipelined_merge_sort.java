@@ -0,0 +1,135 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load-and-sort pipeline for merge_sort --pipeline. The calling thread reads the
+ * file in fixed-size chunks and hands each one to a pool of workers as soon as it
+ * is parsed, so chunks are sorted while the rest of the file is still being read.
+ * When the last chunk is sorted, a k-way merge streams the rows straight into the
+ * output writer (through a duplicate_filter with a duplicate policy); ties go to
+ * the earlier chunk, so the result is the stable order merge_sort produces.
+ */
+public class pipelined_merge_sort {
+    static final int DEFAULT_CHUNK_ROWS = 1 << 20;
+
+    static class Report {
+        String outputFile;
+        long rows;
+        int chunks;
+        long readMs;   // until the last chunk was handed to the workers
+        long sortedMs; // until the last chunk was sorted
+        duplicate_filter duplicates; // null without a duplicate policy
+    }
+
+    static Report sort(File input, String outputPrefix, int workers, int chunkRows) throws IOException {
+        return sort(input, outputPrefix, workers, chunkRows, null);
+    }
+
+    // Sorts with the duplicate policy applied to the output, if one is given
+    static Report sort(File input, String outputPrefix, int workers, int chunkRows,
+                       duplicate_filter.Policy duplicates) throws IOException {
+        Report report = new Report();
+        long start = System.nanoTime();
+        List<record_store> chunks = new ArrayList<>();
+        List<Future<?>> sorting = new ArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            try (csv_loader.RowReader reader = new csv_loader.RowReader(input)) {
+                while (true) {
+                    record_store chunk = new record_store(chunkRows);
+                    if (reader.read(chunk, chunkRows) == 0) break;
+                    report.rows += chunk.size();
+                    chunks.add(chunk);
+                    sorting.add(pool.submit(() -> parallel_merge_sort.sortSequential(chunk)));
+                }
+            }
+            report.readMs = (System.nanoTime() - start) / 1_000_000;
+            for (Future<?> task : sorting) {
+                task.get();
+            }
+            report.sortedMs = (System.nanoTime() - start) / 1_000_000;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while sorting chunks");
+        } catch (ExecutionException e) {
+            throw new IOException("Sorting a chunk failed: " + e.getCause(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        report.chunks = chunks.size();
+        report.outputFile = external_merge_sort.outputName(outputPrefix, report.rows, duplicates);
+        try (csv_writer writer = new csv_writer(new File(report.outputFile))) {
+            if (duplicates != null) {
+                report.duplicates = new duplicate_filter(duplicates, writer::write);
+                mergeChunks(chunks, report.duplicates::write);
+                report.duplicates.finish();
+            } else {
+                mergeChunks(chunks, writer::write);
+            }
+        }
+        return report;
+    }
+
+    // K-way merge with a binary min-heap of chunk indexes ordered by (current key, chunk index)
+    private static void mergeChunks(List<record_store> chunks, duplicate_filter.RowSink sink) throws IOException {
+        int k = chunks.size();
+        int[][] keys = new int[k][];
+        long[][] labels = new long[k][];
+        int[] pos = new int[k];
+        int[] end = new int[k];
+        int[] heap = new int[k];
+        int heapSize = 0;
+
+        for (int c = 0; c < k; c++) {
+            record_store chunk = chunks.get(c);
+            keys[c] = chunk.keys;
+            labels[c] = chunk.labels;
+            end[c] = chunk.size();
+            heap[heapSize++] = c; // chunks are never empty
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, keys, pos);
+        }
+
+        while (heapSize > 0) {
+            int c = heap[0];
+            int p = pos[c]++;
+            sink.write(keys[c][p], labels[c][p], chunks.get(c));
+            if (pos[c] == end[c]) {
+                heap[0] = heap[--heapSize];
+                keys[c] = null; // let the finished chunk be collected
+                labels[c] = null;
+                chunks.set(c, null);
+            }
+            siftDown(heap, heapSize, 0, keys, pos);
+        }
+    }
+
+    private static boolean less(int a, int b, int[][] keys, int[] pos) {
+        int keyA = keys[a][pos[a]], keyB = keys[b][pos[b]];
+        return keyA < keyB || (keyA == keyB && a < b);
+    }
+
+    private static void siftDown(int[] heap, int size, int i, int[][] keys, int[] pos) {
+        if (size == 0) return;
+        int item = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && less(heap[child + 1], heap[child], keys, pos)) {
+                child++;
+            }
+            if (!less(heap[child], item, keys, pos)) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = item;
+    }
+}
@@ -0,0 +1,32 @@
+import java.io.*;
+
+/**
+ * Checks that merge_sort --pipeline writes exactly what merge_sort writes: chunks
+ * are sorted stably and ties in the k-way merge go to the earlier chunk. Runs with
+ * one chunk and with many uneven ones, on one and several workers:
+ *
+ *   java pipelined_merge_sort_check [rows]
+ */
+public class pipelined_merge_sort_check {
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store input = sort_check.generate(n);
+        record_store expected = sort_check.reference(input);
+
+        int[][] cases = {{1, pipelined_merge_sort.DEFAULT_CHUNK_ROWS}, {1, 999}, {3, 999}, {4, 10_007}};
+        try {
+            File dataset = sort_check.writeCSV(input, "pipelined_merge_sort_check.csv");
+            for (int[] c : cases) {
+                pipelined_merge_sort.Report report = pipelined_merge_sort.sort(dataset,
+                        "../temp/pipelined_merge_sort_check_", c[0], c[1]);
+                File output = new File(report.outputFile);
+                record_store actual = csv_loader.load(output);
+                output.delete();
+                sort_check.expectIdentical("pipelined merge sort, " + c[0] + " workers, " + report.chunks
+                        + " chunks", expected, actual);
+            }
+        } catch (IOException e) {
+            sort_check.fail("pipelined merge sort", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Selection for quick_sort --top and --percentiles. select() is quickselect on
+ * quick_sort.partition with a median-of-3 pivot: it partitions only the side that
+ * holds the wanted rank, so it does expected O(n) work instead of a full sort.
+ * After 2*log2(n) partitioning levels it switches to median-of-medians pivots
+ * with three-way partitioning (introselect), which bounds the worst case at O(n)
+ * and also copes with long runs of equal keys. selectAll() places several ranks
+ * in one pass by splitting the rank list at each partition.
+ */
+public class quick_select {
+    private static final int GROUP = 5;
+
+    // Places the row of the given 0-based rank at index rank, with no larger key before it
+    // and no smaller key after it
+    static void select(record_store store, int rank) {
+        select(store, 0, store.size() - 1, rank, intro_quick_sort.depthLimit(store.size()));
+    }
+
+    // Places every rank (0-based, any order, duplicates allowed) like select() does
+    static void selectAll(record_store store, int[] ranks) {
+        int[] sorted = ranks.clone();
+        for (int i = 1; i < sorted.length; i++) {
+            int rank = sorted[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > rank) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = rank;
+        }
+        selectAll(store, sorted, 0, sorted.length - 1, 0, store.size() - 1);
+    }
+
+    // Selects the middle rank of ranks[from..to] in [low, high], then the ranks on each side
+    private static void selectAll(record_store store, int[] ranks, int from, int to, int low, int high) {
+        while (from <= to && low < high) {
+            int middle = (from + to) >>> 1;
+            int rank = ranks[middle];
+            select(store, low, high, rank, intro_quick_sort.depthLimit(high - low + 1));
+            selectAll(store, ranks, from, middle - 1, low, rank - 1);
+            from = middle + 1;
+            low = rank + 1;
+        }
+    }
+
+    // Quickselect on [low, high] inclusive; median-of-medians once depthLimit levels are used up
+    static void select(record_store store, int low, int high, int rank, int depthLimit) {
+        int[] keys = store.keys;
+        while (low < high) {
+            int lt, gt;
+            if (depthLimit-- > 0) {
+                store.swap(intro_quick_sort.Pivot.MEDIAN_OF_3.choose(keys, low, high), high);
+                lt = gt = quick_sort.partition(store, low, high);
+            } else {
+                long bounds = intro_quick_sort.partition3(store, low, high, medianOfMedians(store, low, high));
+                lt = (int) (bounds >>> 32);
+                gt = (int) bounds;
+            }
+            if (rank < lt) {
+                high = lt - 1;
+            } else if (rank > gt) {
+                low = gt + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Index of a pivot with at least 3/10 of [low, high] on either side: the medians of
+    // groups of five are gathered at the front and their median is selected recursively
+    private static int medianOfMedians(record_store store, int low, int high) {
+        int n = high - low + 1;
+        if (n <= GROUP) {
+            intro_quick_sort.insertionSort(store, low, high);
+            return low + (n - 1) / 2;
+        }
+        int groups = 0;
+        for (int start = low; start <= high; start += GROUP) {
+            int end = Math.min(start + GROUP - 1, high);
+            intro_quick_sort.insertionSort(store, start, end);
+            store.swap(low + groups, start + (end - start) / 2);
+            groups++;
+        }
+        int middle = low + (groups - 1) / 2;
+        select(store, low, low + groups - 1, middle, 0);
+        return middle;
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.SplittableRandom;
+
+/**
+ * Checks quick_select.select and selectAll (quick_sort --top and --percentiles)
+ * against the classic merge_sort of the same rows. Every selected rank must hold
+ * the key merge_sort puts there, with no larger key before it and no smaller key
+ * after it, and the rows must only have moved. Runs with the usual depth limit and
+ * with depth limit 0, where every pivot is a median of medians, on random, sorted,
+ * reversed and all-equal keys, and on sizes around the groups of five; selectAll
+ * gets ranks in any order with repeats:
+ *
+ *   java quick_select_check [rows]
+ */
+public class quick_select_check {
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store random = sort_check.generate(n);
+        record_store sorted = sort_check.reference(random);
+        String[] names = {"random", "sorted", "reversed", "all-equal"};
+        record_store[] inputs = {random, sorted, sort_check.reversed(sorted), sort_check.generate(n, 1, sort_check.SEED)};
+        for (int c = 0; c < inputs.length; c++) {
+            expectSelected(names[c] + " keys", inputs[c]);
+        }
+        for (int size : new int[] {1, 2, 5, 6, 24, 25, 26, 126}) {
+            expectSelected(size + " rows", sort_check.generate(size, Math.max(1, size / 3), sort_check.SEED + size));
+        }
+    }
+
+    private static void expectSelected(String what, record_store input) {
+        int n = input.size();
+        record_store expected = sort_check.reference(input);
+        int[] ranks = {0, n - 1, n / 2, (n - 1) / 2, n / 100, n - 1 - n / 100, n / 3};
+
+        for (int depthLimit : new int[] {intro_quick_sort.depthLimit(n), 0}) {
+            String mode = depthLimit == 0 ? "median of medians" : "quickselect";
+            for (int rank : ranks) {
+                record_store actual = sort_check.copy(input);
+                quick_select.select(actual, 0, n - 1, rank, depthLimit);
+                expectPlaced(what + ", " + mode + ", rank " + rank, expected, actual, new int[] {rank});
+            }
+        }
+
+        // The ranks above twice, unsorted, plus random ones
+        SplittableRandom random = new SplittableRandom(sort_check.SEED);
+        int[] many = new int[ranks.length * 3];
+        for (int i = 0; i < ranks.length; i++) {
+            many[i] = ranks[i];
+            many[ranks.length + i] = ranks[ranks.length - 1 - i];
+            many[2 * ranks.length + i] = random.nextInt(n);
+        }
+        record_store actual = sort_check.copy(input);
+        quick_select.selectAll(actual, many);
+        expectPlaced(what + ", selectAll of " + many.length + " ranks", expected, actual, many);
+    }
+
+    // Each rank holds the merge_sort key with no larger key before it and no smaller
+    // key after it, and the rows are those of the input
+    private static void expectPlaced(String what, record_store expected, record_store actual, int[] ranks) {
+        int n = actual.size();
+        int[] prefixMax = new int[n], suffixMin = new int[n];
+        for (int i = 0; i < n; i++) {
+            prefixMax[i] = i == 0 ? actual.keys[i] : Math.max(prefixMax[i - 1], actual.keys[i]);
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            suffixMin[i] = i == n - 1 ? actual.keys[i] : Math.min(suffixMin[i + 1], actual.keys[i]);
+        }
+        for (int rank : ranks) {
+            int key = actual.keys[rank];
+            if (key != expected.keys[rank]) {
+                sort_check.fail(what, "rank " + rank + " holds key " + key + ", expected " + expected.keys[rank]);
+            }
+            if ((rank > 0 && prefixMax[rank - 1] > key) || (rank < n - 1 && suffixMin[rank + 1] < key)) {
+                sort_check.fail(what, "rank " + rank + " (key " + key + ") has a larger key before it"
+                        + " or a smaller key after it");
+            }
+        }
+        sort_check.expectSameRows(what, expected, sort_check.reference(actual));
+    }
+}
@@ -1,6 +1,4 @@
 import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * QuickSort algorithm implementation reads a CSV file, sorts it by the integer column using quick sort
@@ -8,77 +6,265 @@ import java.util.List;
  */
 public class quick_sort {
 
-    // Data class representing one row
-    static class DataItem {
-        int number;
-        String text;
+    private static final String USAGE = "Usage: java quick_sort <dataset_filename>"
+            + " [--intro[=last|median3|ninther|random]] [--parallel[=<threads>]] [--cutoff=<rows>]"
+            + " [--duplicates=report] | [--top=<k>] [--percentiles=<p>,<p>,...]"
+            + " | [--composite] [--duplicates=report|keep-first|keep-last]";
 
-        DataItem(int number, String text) {
-            this.number = number;
-            this.text = text;
+    // Command line options after the dataset name; no options means the classic sort
+    private static class Options {
+        String inputFile;
+        intro_quick_sort.Pivot introPivot;
+        int parallelism;
+        int cutoff = intro_quick_sort.DEFAULT_CUTOFF;
+        boolean cutoffSet;
+        int top;              // selection mode: the k smallest rows, sorted
+        double[] percentiles; // selection mode: nearest-rank percentile keys
+        boolean composite;    // order by (key, label) through packed longs
+        duplicate_filter.Policy duplicates;
+
+        static Options parse(String[] args) {
+            if (args.length < 1) return null;
+            Options options = new Options();
+            options.inputFile = args[0];
+            for (int i = 1; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--intro")) {
+                    options.introPivot = intro_quick_sort.Pivot.MEDIAN_OF_3;
+                } else if (arg.startsWith("--intro=")) {
+                    options.introPivot = intro_quick_sort.Pivot.fromOption(value(arg));
+                } else if (arg.equals("--parallel")) {
+                    options.parallelism = Runtime.getRuntime().availableProcessors();
+                } else if (arg.startsWith("--parallel=")) {
+                    options.parallelism = Integer.parseInt(value(arg));
+                    if (options.parallelism < 1) throw new IllegalArgumentException("Thread count must be positive");
+                } else if (arg.startsWith("--duplicates=")) {
+                    options.duplicates = duplicate_filter.Policy.fromOption(value(arg));
+                } else if (arg.equals("--composite")) {
+                    options.composite = true;
+                } else if (arg.startsWith("--top=")) {
+                    options.top = Integer.parseInt(value(arg));
+                    if (options.top < 1) throw new IllegalArgumentException("k must be positive");
+                } else if (arg.startsWith("--percentiles=")) {
+                    String[] values = value(arg).split(",");
+                    options.percentiles = new double[values.length];
+                    for (int p = 0; p < values.length; p++) {
+                        options.percentiles[p] = Double.parseDouble(values[p]);
+                        if (!(options.percentiles[p] > 0 && options.percentiles[p] <= 100)) {
+                            throw new IllegalArgumentException("Percentiles must be in (0, 100]");
+                        }
+                    }
+                } else if (arg.startsWith("--cutoff=")) {
+                    options.cutoff = Integer.parseInt(value(arg));
+                    if (options.cutoff < 1) throw new IllegalArgumentException("Cutoff must be positive");
+                    options.cutoffSet = true;
+                } else {
+                    return null;
+                }
+            }
+            boolean selecting = options.top > 0 || options.percentiles != null;
+            boolean other = options.introPivot != null || options.parallelism > 0;
+            if ((selecting && other) || (options.composite && (selecting || other))) return null;
+            // Only the intro and parallel sorts switch to insertion sort below the cutoff
+            if (options.cutoffSet && !other) return null;
+            if (selecting && options.duplicates != null) return null;
+            // Quicksort is not stable, so "first" and "last" of a key only mean something in
+            // the (key, label) order of --composite
+            if (options.duplicates != null && options.duplicates != duplicate_filter.Policy.REPORT
+                    && !options.composite) return null;
+            return options;
         }
 
-        String format() {
-            return number + "," + text;
+        private static String value(String arg) {
+            return arg.substring(arg.indexOf('=') + 1);
         }
     }
 
     public static void main(String[] args) {
-        if (args.length < 1) {
-            System.out.println("Usage: java QuickSort <dataset_filename>");
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid option: " + e.getMessage());
+            return;
+        }
+        if (options == null) {
+            System.out.println(USAGE);
             return;
         }
 
-        String inputFilename = "../datasets/" + args[0];
-        List<DataItem> data = readCSV(inputFilename);
+        String inputFilename = "../datasets/" + options.inputFile;
+        record_store data = readCSV(inputFilename);
 
-        if (data == null || data.isEmpty()) {
+        if (data == null || data.size() == 0) {
             System.out.println("Error: No data found in file.");
             return;
         }
 
+        if (options.top > 0 || options.percentiles != null) {
+            select(data, options);
+            return;
+        }
+
         // Timing only the sorting part
+        if (op_counters.ENABLED) op_counters.start();
         long startTime = System.currentTimeMillis();
-        quickSort(data, 0, data.size() - 1);
+        if (options.parallelism > 0) {
+            intro_quick_sort.Pivot pivot = options.introPivot != null
+                    ? options.introPivot : intro_quick_sort.Pivot.MEDIAN_OF_3;
+            parallel_quick_sort.sort(data, options.parallelism, pivot, options.cutoff);
+        } else if (options.introPivot != null) {
+            intro_quick_sort.sort(data, options.introPivot, options.cutoff);
+        } else if (options.composite) {
+            composite_key.sort(data, composite_key.Algorithm.QUICK);
+        } else {
+            quickSort(data, 0, data.size() - 1);
+        }
         long endTime = System.currentTimeMillis();
+        if (op_counters.ENABLED) {
+            String variant = options.parallelism > 0 ? "parallel"
+                    : options.introPivot != null ? "intro_" + options.introPivot.option
+                    : options.composite ? "composite" : "classic";
+            int counted = variant.equals("classic")
+                    ? op_counters.COMPARISONS | op_counters.SWAPS | op_counters.MOVES | op_counters.DEPTH
+                    : op_counters.NONE;
+            op_counters.report("quick_sort", variant, options.inputFile, data.size(), counted,
+                    options.parallelism == 0);
+        }
 
-        String outputFilename = "../outputs/quick_sort_" + getDatasetSize(args[0]) + ".csv";
-        writeCSV(data, outputFilename);
+        // Binary datasets are sorted into binary output
+        String outputFilename = "../outputs/quick_sort_" + getDatasetSize(options.inputFile);
+        boolean binary = isBinary(inputFilename);
+        if (options.duplicates != null) {
+            outputFilename = writeChecked(data, outputFilename, binary, options.duplicates);
+        } else if (binary) {
+            outputFilename += column_file.EXTENSION;
+            writeBinary(data, outputFilename);
+        } else {
+            outputFilename += ".csv";
+            writeCSV(data, outputFilename);
+        }
 
         System.out.println("Sorting complete.");
         System.out.println("Output saved to: " + outputFilename);
         System.out.println("Execution time (ms): " + (endTime - startTime));
     }
 
-    // Reads the dataset from the file
-    private static List<DataItem> readCSV(String filePath) {
-        List<DataItem> list = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",", 2);
-                if (parts.length == 2) {
-                    try {
-                        int num = Integer.parseInt(parts[0].trim());
-                        String text = parts[1].trim();
-                        list.add(new DataItem(num, text));
-                    } catch (NumberFormatException e) {
-                        System.err.println("Skipping invalid line: " + line);
-                    }
+    // Selection mode: quickselect the requested ranks instead of sorting everything
+    private static void select(record_store data, Options options) {
+        int n = data.size();
+        int k = Math.min(options.top, n);
+        double[] percentiles = options.percentiles != null ? options.percentiles : new double[0];
+        int[] ranks = new int[percentiles.length + (k > 0 ? 1 : 0)];
+        for (int p = 0; p < percentiles.length; p++) {
+            ranks[p] = Math.max(1, (int) Math.ceil(percentiles[p] / 100 * n)) - 1;
+        }
+        if (k > 0) ranks[percentiles.length] = k - 1;
+
+        if (op_counters.ENABLED) op_counters.start();
+        long startTime = System.currentTimeMillis();
+        quick_select.selectAll(data, ranks);
+        int[] percentileKeys = new int[percentiles.length];
+        for (int p = 0; p < percentiles.length; p++) {
+            percentileKeys[p] = data.keys[ranks[p]];
+        }
+        if (k > 1) {
+            // The k smallest rows are now in front; only they are sorted
+            intro_quick_sort.sortRange(data, 0, k - 1, intro_quick_sort.depthLimit(k),
+                    intro_quick_sort.Pivot.MEDIAN_OF_3, intro_quick_sort.DEFAULT_CUTOFF);
+        }
+        long endTime = System.currentTimeMillis();
+        // quick_select is not instrumented; only time, allocation and GC are recorded
+        if (op_counters.ENABLED) {
+            op_counters.report("quick_sort", "select", options.inputFile, n, op_counters.NONE, true);
+        }
+
+        String size = getDatasetSize(options.inputFile);
+        if (k > 0) {
+            record_store top = new record_store(data.keys, data.labels, k, data.sideLabels());
+            String outputFilename = "../outputs/quick_sort_top_" + k + "_" + size;
+            if (isBinary("../datasets/" + options.inputFile)) {
+                outputFilename += column_file.EXTENSION;
+                writeBinary(top, outputFilename);
+            } else {
+                outputFilename += ".csv";
+                writeCSV(top, outputFilename);
+            }
+            System.out.println("Top " + k + " rows saved to: " + outputFilename);
+        }
+        if (percentiles.length > 0) {
+            String outputFilename = "../outputs/quick_sort_percentiles_" + size + ".txt";
+            try (PrintWriter writer = new PrintWriter(new FileWriter(outputFilename))) {
+                for (int p = 0; p < percentiles.length; p++) {
+                    String line = String.format("p%s: %d (rank %d of %d)", formatPercentile(percentiles[p]),
+                            percentileKeys[p], ranks[p] + 1, n);
+                    writer.println(line);
+                    System.out.println(line);
                 }
+                System.out.println("Percentiles saved to: " + outputFilename);
+            } catch (IOException e) {
+                System.err.println("Error writing file: " + outputFilename);
             }
+        }
+        System.out.println("Execution time (ms): " + (endTime - startTime));
+    }
+
+    private static String formatPercentile(double p) {
+        return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p);
+    }
+
+    // Reads the dataset from the file
+    private static record_store readCSV(String filePath) {
+        try {
+            return csv_loader.load(new File(filePath));
         } catch (IOException e) {
             System.err.println("Error reading file: " + filePath);
+            return null;
         }
-        return list;
     }
 
     // Writes sorted data to the file
-    private static void writeCSV(List<DataItem> list, String filePath) {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(filePath))) {
-            for (DataItem item : list) {
-                pw.println(item.format());
+    private static void writeCSV(record_store store, String filePath) {
+        try {
+            csv_writer.write(store, filePath);
+        } catch (IOException e) {
+            System.err.println("Error writing file: " + filePath);
+        }
+    }
+
+    // Writes the output while checking for duplicate keys; returns the output file name
+    private static String writeChecked(record_store store, String outputName, boolean binary,
+                                       duplicate_filter.Policy policy) {
+        String reportFilename = outputName + "_duplicates.txt";
+        if (policy != duplicate_filter.Policy.REPORT) outputName += "_dedup";
+        String outputFilename = outputName + (binary ? column_file.EXTENSION : ".csv");
+        try {
+            duplicate_filter duplicates;
+            if (binary) {
+                duplicates = duplicate_filter.compact(store, policy);
+                column_file.write(store, new File(outputFilename), 0);
+            } else {
+                duplicates = duplicate_filter.writeCSV(store, outputFilename, policy);
             }
+            duplicates.report(reportFilename);
+        } catch (IOException e) {
+            System.err.println("Error writing file: " + outputFilename);
+        }
+        return outputFilename;
+    }
+
+    private static boolean isBinary(String filePath) {
+        try {
+            return column_file.isColumnFile(new File(filePath));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Writes sorted data in the binary column format
+    private static void writeBinary(record_store store, String filePath) {
+        try {
+            column_file.write(store, new File(filePath), 0);
         } catch (IOException e) {
             System.err.println("Error writing file: " + filePath);
         }
@@ -86,38 +272,40 @@ public class quick_sort {
 
     // Extracts number from filename like 
     private static String getDatasetSize(String filename) {
-        return filename.replace("dataset_", "").replace(".csv", "");
+        return filename.replace("dataset_", "").replace(".csv", "").replace(column_file.EXTENSION, "");
     }
 
     // QuickSort (last element as pivot)
-    private static void quickSort(List<DataItem> list, int low, int high) {
+    static void quickSort(record_store store, int low, int high) {
         if (low < high) {
-            int pi = partition(list, low, high);
-            quickSort(list, low, pi - 1);
-            quickSort(list, pi + 1, high);
+            if (op_counters.ENABLED) op_counters.enter();
+            int pi = partition(store, low, high);
+            quickSort(store, low, pi - 1);
+            quickSort(store, pi + 1, high);
+            if (op_counters.ENABLED) op_counters.exit();
         }
     }
 
     // Partition method using last element as pivot
-    private static int partition(List<DataItem> list, int low, int high) {
-        int pivot = list.get(high).number;
+    static int partition(record_store store, int low, int high) {
+        int[] keys = store.keys;
+        int pivot = keys[high];
         int i = low - 1;
 
         for (int j = low; j < high; j++) {
-            if (list.get(j).number < pivot) {
+            if (keys[j] < pivot) {
                 i++;
-                swap(list, i, j);
+                store.swap(i, j);
             }
         }
 
-        swap(list, i + 1, high);
+        store.swap(i + 1, high);
+        if (op_counters.ENABLED) {
+            long swaps = i + 2 - low; // one per smaller key plus the pivot swap
+            op_counters.comparisons += high - low;
+            op_counters.swaps += swaps;
+            op_counters.moves += 2 * swaps;
+        }
         return i + 1;
     }
-
-    // Swaps two elements in the list
-    private static void swap(List<DataItem> list, int i, int j) {
-        DataItem temp = list.get(i);
-        list.set(i, list.get(j));
-        list.set(j, temp);
-    }
 }
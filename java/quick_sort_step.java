@@ -6,8 +6,8 @@ public class quick_sort_step {
 
     public static void main(String[] args) {
         // Make sure the user gave us 3 arguments
-        if (args.length < 3) {
-            System.out.println("Usage: java quick_sort_step <filename> <startRow> <endRow>");
+        if (args.length < 3 || (args.length > 3 && !args[3].equals("--events"))) {
+            System.out.println("Usage: java quick_sort_step <filename> <startRow> <endRow> [--events]");
             return;
         }
 
@@ -23,12 +23,23 @@ public class quick_sort_step {
             return;
         }
 
+        // With --events only the swaps and pivot positions are logged
+        if (args.length > 3) {
+            saveEventLog(entries, fileName, from, to);
+            return;
+        }
+
         // Create a list to keep track of sorting steps
         List<String> sortSteps = new ArrayList<>();
         sortSteps.add(snapshot(entries)); // initial state
 
         // Run quicksort and log each change
-        quickSort(entries, 0, entries.size() - 1, sortSteps);
+        try {
+            quickSort(entries, 0, entries.size() - 1, sortSteps, null);
+        } catch (IOException e) {
+            System.err.println("Failed to sort: " + e.getMessage());
+            return;
+        }
 
         // Save all the steps into a file in outputs folder
         saveStepsToFile(sortSteps, fileName, from, to);
@@ -51,34 +62,18 @@ public class quick_sort_step {
 
     // Reads a portion of a CSV file (from line start to end)
     static List<DataItem> readFromCSV(String path, int start, int end) {
-        List<DataItem> list = new ArrayList<>();
-        int lineNum = 0;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                lineNum++;
-
-                if (lineNum < start) continue;
-                if (lineNum > end) break;
-
-                String[] parts = line.split(",");
-                if (parts.length == 2) {
-                    try {
-                        int num = Integer.parseInt(parts[0].trim());
-                        String text = parts[1].trim();
-                        list.add(new DataItem(num, text));
-                    } catch (NumberFormatException ignore) {
-                        // skip any line where the number part is invalid
-                    }
-                }
-            }
+        record_store rows;
+        try {
+            rows = csv_loader.loadRows(new File(path), start, end);
         } catch (IOException e) {
             System.err.println("Error reading file: " + e.getMessage());
             return null;
         }
 
+        List<DataItem> list = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            list.add(new DataItem(rows.keys[i], rows.labelText(rows.labels[i])));
+        }
         return list;
     }
 
@@ -110,19 +105,48 @@ public class quick_sort_step {
         }
     }
 
-    // Sort the list and record each change
-    static void quickSort(List<DataItem> list, int low, int high, List<String> steps) {
-        if (low < high) {
-            int pivot = partition(list, low, high, steps);
-            steps.add("pi=" + pivot + " " + snapshot(list));
-            quickSort(list, low, pivot - 1, steps);
-            quickSort(list, pivot + 1, high, steps);
+    // Sort the list and write the swaps and pivots to a trace file for trace_replay
+    static void saveEventLog(List<DataItem> entries, String inputName, int start, int end) {
+        new File("../outputs").mkdirs();
+
+        String outputName = "../outputs/quick_sort_step_" + start + "_" + end + ".log";
+
+        try (Writer writer = new BufferedWriter(new FileWriter(outputName), 1 << 16)) {
+            writer.write("# input ../datasets/" + inputName + ", rows " + start + " to " + end + "\n");
+            writer.write("# after each partition the smaller side is sorted first, then the larger one\n");
+            trace_replay.writeHeader(writer, "quick_sort_step", 0, entries);
+            quickSort(entries, 0, entries.size() - 1, null, writer);
+            System.out.println("Saved sort events to " + outputName);
+        } catch (IOException e) {
+            System.err.println("Failed to write events: " + e.getMessage());
+        }
+    }
+
+    // Sort the list and record each change: a snapshot per partition in steps, or only
+    // the swaps and pivots when an events writer is given. The smaller side is sorted
+    // by recursion and the larger one by the loop, so sorted ranges stay within the stack
+    static void quickSort(List<DataItem> list, int low, int high, List<String> steps, Writer events)
+            throws IOException {
+        while (low < high) {
+            int pivot = partition(list, low, high, events);
+            if (events != null) {
+                events.write("p " + pivot + "\n");
+            } else {
+                steps.add("pi=" + pivot + " " + snapshot(list));
+            }
+            if (pivot - low < high - pivot) {
+                quickSort(list, low, pivot - 1, steps, events);
+                low = pivot + 1;
+            } else {
+                quickSort(list, pivot + 1, high, steps, events);
+                high = pivot - 1;
+            }
         }
     }
 
 
     // Do the partition and log swaps
-    static int partition(List<DataItem> list, int low, int high, List<String> steps) {
+    static int partition(List<DataItem> list, int low, int high, Writer events) throws IOException {
         int pivotValue = list.get(high).number;
         int i = low - 1;
 
@@ -130,6 +154,7 @@ public class quick_sort_step {
             if (list.get(j).number < pivotValue) {
                 i++;
                 // Swap
+                if (events != null && i != j) events.write("s " + i + " " + j + "\n");
                 DataItem temp = list.get(i);
                 list.set(i, list.get(j));
                 list.set(j, temp);
@@ -137,6 +162,7 @@ public class quick_sort_step {
         }
 
         // Final pivot swap
+        if (events != null && i + 1 != high) events.write("s " + (i + 1) + " " + high + "\n");
         DataItem temp = list.get(i + 1);
         list.set(i + 1, list.get(high));
         list.set(high, temp);
@@ -0,0 +1,155 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * LSD radix sort over the integer column, 8 bits per pass, carrying each row's
+ * label along. Every pass builds per-block digit histograms and scatters the
+ * blocks in parallel; passes where all keys share the same digit are skipped.
+ * The sort is stable, so equal keys keep their input order like merge_sort.
+ */
+public class radix_sort {
+    private static final int DIGIT_BITS = 8;
+    private static final int RADIX = 1 << DIGIT_BITS;
+    private static final int PASSES = Integer.SIZE / DIGIT_BITS;
+    private static final int MIN_BLOCK = 1 << 16;
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].startsWith("--parallel"))) {
+            System.out.println("Usage: java radix_sort <dataset_filename> [--parallel[=<threads>]]");
+            return;
+        }
+
+        int parallelism = 1;
+        if (args.length == 2) {
+            try {
+                parallelism = args[1].equals("--parallel")
+                        ? Runtime.getRuntime().availableProcessors()
+                        : Integer.parseInt(args[1].substring("--parallel=".length()));
+            } catch (NumberFormatException e) {
+                parallelism = 0;
+            }
+            if (parallelism < 1) {
+                System.out.println("Invalid thread count: " + args[1]);
+                return;
+            }
+        }
+
+        record_store data;
+        try {
+            data = csv_loader.load(new File("../datasets/" + args[0]));
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return;
+        }
+
+        // Timing only the sorting part
+        long startTime = System.currentTimeMillis();
+        sort(data, parallelism);
+        long endTime = System.currentTimeMillis();
+
+        String outputFilename = "../outputs/radix_sort_" + data.size() + ".csv";
+        try {
+            new File("../outputs").mkdirs();
+            merge_sort.writeOutput(data, outputFilename);
+        } catch (IOException e) {
+            System.err.println("Error writing file: " + outputFilename);
+            return;
+        }
+
+        System.out.println("Sorting complete.");
+        System.out.println("Output saved to: " + outputFilename);
+        System.out.println("Execution time (ms): " + (endTime - startTime));
+    }
+
+    static void sort(record_store store, int parallelism) {
+        int n = store.size();
+        if (n < 2) return;
+
+        int blocks = (int) Math.max(1, Math.min(parallelism * 4L, n / MIN_BLOCK));
+        int blockSize = (n + blocks - 1) / blocks;
+        blocks = (n + blockSize - 1) / blockSize;
+
+        int[] keys = store.keys, auxKeys = new int[n];
+        long[] labels = store.labels, auxLabels = new long[n];
+        int[][] counts = new int[blocks][RADIX];
+
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            for (int pass = 0; pass < PASSES; pass++) {
+                int shift = pass * DIGIT_BITS;
+                // The sign bit is flipped in the top digit so negative keys would sort first
+                int flip = pass == PASSES - 1 ? RADIX >>> 1 : 0;
+                int[] srcKeys = keys, dstKeys = auxKeys;
+                long[] srcLabels = labels, dstLabels = auxLabels;
+
+                run(pool, blocks, b -> {
+                    int[] count = counts[b];
+                    Arrays.fill(count, 0);
+                    int from = b * blockSize, to = Math.min(n, from + blockSize);
+                    for (int i = from; i < to; i++) {
+                        count[((srcKeys[i] >>> shift) & (RADIX - 1)) ^ flip]++;
+                    }
+                });
+
+                // Exclusive prefix over (digit, block) so each block scatters into its own slots
+                int next = 0;
+                boolean trivial = false;
+                for (int d = 0; d < RADIX; d++) {
+                    int digitStart = next;
+                    for (int b = 0; b < blocks; b++) {
+                        int c = counts[b][d];
+                        counts[b][d] = next;
+                        next += c;
+                    }
+                    if (next - digitStart == n) trivial = true;
+                }
+                if (trivial) continue;
+
+                run(pool, blocks, b -> {
+                    int[] offset = counts[b];
+                    int from = b * blockSize, to = Math.min(n, from + blockSize);
+                    for (int i = from; i < to; i++) {
+                        int key = srcKeys[i];
+                        int target = offset[((key >>> shift) & (RADIX - 1)) ^ flip]++;
+                        dstKeys[target] = key;
+                        dstLabels[target] = srcLabels[i];
+                    }
+                });
+
+                keys = dstKeys;
+                auxKeys = srcKeys;
+                labels = dstLabels;
+                auxLabels = srcLabels;
+            }
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+
+        store.keys = keys;
+        store.labels = labels;
+    }
+
+    private interface BlockAction {
+        void run(int block);
+    }
+
+    // Runs the action for every block, on the pool when there is one
+    private static void run(ForkJoinPool pool, int blocks, BlockAction action) {
+        if (pool == null || blocks == 1) {
+            for (int b = 0; b < blocks; b++) action.run(b);
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(blocks);
+        for (int b = 0; b < blocks; b++) {
+            int block = b;
+            tasks.add(pool.submit(() -> action.run(block)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+}
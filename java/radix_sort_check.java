@@ -0,0 +1,26 @@
+/**
+ * Checks that radix_sort writes exactly what merge_sort writes: the LSD passes are
+ * stable, so equal keys keep their input order. Runs with repeated small keys and
+ * with keys spread over all 31 bits, on one and several threads. The default size
+ * is large enough to split every pass into several blocks:
+ *
+ *   java radix_sort_check [rows]
+ */
+public class radix_sort_check {
+    private static final int DEFAULT_ROWS = 500_000;
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, DEFAULT_ROWS);
+        String[] names = {"repeated keys", "31-bit keys"};
+        record_store[] inputs = {sort_check.generate(n), sort_check.generate(n, Integer.MAX_VALUE, sort_check.SEED)};
+
+        for (int i = 0; i < inputs.length; i++) {
+            record_store expected = sort_check.reference(inputs[i]);
+            for (int threads : new int[] {1, 4}) {
+                record_store actual = sort_check.copy(inputs[i]);
+                radix_sort.sort(actual, threads);
+                sort_check.expectIdentical("radix sort, " + threads + " threads, " + names[i], expected, actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams every row whose key lies in [low, high] out of a sorted output file:
+ *
+ *   java range_query merge_sort_1000000.csv low high [--output=file]
+ *
+ * The file's key_index (kept in "<file>.idx" and mapped, not loaded) gives the
+ * first and last matching entries with a lower and an upper bound search. In a
+ * sorted file those rows form one contiguous block, so a CSV range is copied
+ * with a single transferTo and a .bin range is read column slice by column
+ * slice; only files that are not in key order fall back to one positional read
+ * per row, which copies CSV lines unchanged. The rows go to
+ * ../outputs/range_query_<low>_<high>.csv unless --output names another file.
+ */
+public class range_query {
+    private static final String USAGE = "Usage: java range_query <sorted_file> <low> <high> [--output=file]";
+    private static final int BINARY_CHUNK_ROWS = 1 << 20;
+
+    static class Result {
+        long rows;
+        long bytes;
+        long searchNanos;
+        long copyNanos;
+        boolean contiguous;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            System.out.println(USAGE);
+            return;
+        }
+        int low, high;
+        try {
+            low = Integer.parseInt(args[1]);
+            high = Integer.parseInt(args[2]);
+        } catch (NumberFormatException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        File output = new File("../outputs", "range_query_" + low + "_" + high + ".csv");
+        if (args.length == 4) {
+            if (!args[3].startsWith("--output=")) {
+                System.out.println(USAGE);
+                return;
+            }
+            output = new File(args[3].substring("--output=".length()));
+        }
+        if (low > high) {
+            System.out.println("Empty range: " + low + " > " + high);
+            return;
+        }
+
+        File source = new File("../outputs", args[0]);
+        if (!source.exists()) source = new File(args[0]);
+        if (!source.exists()) {
+            System.out.println("File not found: " + source.getAbsolutePath());
+            return;
+        }
+        if (output.getParentFile() != null) output.getParentFile().mkdirs();
+
+        try (key_index index = key_index.open(source)) {
+            Result result = query(index, source, low, high, output);
+            System.out.printf("Rows with keys in [%d, %d]: %d%n", low, high, result.rows);
+            System.out.printf("Search: %.1f us, copy: %.1f us (%s, %d bytes)%n", result.searchNanos / 1e3,
+                    result.copyNanos / 1e3, result.contiguous ? "contiguous block" : "row by row", result.bytes);
+            System.out.println("File saved to: " + output.getPath());
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    // Writes the rows with keys in [low, high] to the output file
+    static Result query(key_index index, File source, int low, int high, File output) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        int first = index.lowerBound(low);
+        int end = index.upperBound(high);
+        result.searchNanos = System.nanoTime() - start;
+        result.rows = end - first;
+        result.contiguous = index.sourceSorted();
+
+        start = System.nanoTime();
+        boolean binary = column_file.isColumnFile(source);
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            if (result.contiguous && !binary) {
+                result.bytes = copyBlock(index, in, first, end, output);
+            } else if (result.contiguous) {
+                result.bytes = copyColumns(source, first, end, output);
+            } else {
+                result.bytes = copyRows(index, source, in, binary, first, end, output);
+            }
+        }
+        result.copyNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // Sorted CSV: the rows of entries [first, end) are the bytes from the first row's
+    // offset to the next row's offset (or the end of the file)
+    private static long copyBlock(key_index index, FileChannel in, int first, int end, File output)
+            throws IOException {
+        long from = first < index.size() ? index.offset(first) : in.size();
+        long to = end < index.size() ? index.offset(end) : in.size();
+        try (FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (long pos = from; pos < to; ) {
+                pos += in.transferTo(pos, to - pos, out);
+            }
+        }
+        if (to > from && end == index.size()) {
+            // The last row of a file without a trailing newline still gets one
+            ByteBuffer last = ByteBuffer.allocate(1);
+            in.read(last, to - 1);
+            if (last.get(0) != '\n') {
+                try (FileWriter writer = new FileWriter(output, true)) {
+                    writer.write(System.lineSeparator());
+                }
+                return to - from + System.lineSeparator().length();
+            }
+        }
+        return to - from;
+    }
+
+    // Sorted .bin: entry i is row i, so the range is read as column slices
+    private static long copyColumns(File source, int first, int end, File output) throws IOException {
+        try (csv_writer writer = new csv_writer(output)) {
+            for (long row = first; row < end; row += BINARY_CHUNK_ROWS) {
+                long last = Math.min(end, row + BINARY_CHUNK_ROWS);
+                record_store chunk = column_file.readRows(source, row + 1, last);
+                for (int i = 0; i < chunk.size(); i++) {
+                    writer.write(chunk.keys[i], chunk.labels[i]);
+                }
+            }
+        }
+        return output.length();
+    }
+
+    // Unsorted source: one positional read per matching row. CSV rows are copied byte for
+    // byte, so labels come out exactly as they were written whatever they contain
+    private static long copyRows(key_index index, File source, FileChannel in, boolean binary, int first, int end,
+                                 File output) throws IOException {
+        if (binary) {
+            try (csv_writer writer = new csv_writer(output)) {
+                for (int i = first; i < end; i++) {
+                    writer.write(index.key(i), column_file.readLabel(in, source, index.offset(i)));
+                }
+            }
+            return output.length();
+        }
+        ByteBuffer line = ByteBuffer.allocate(256);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16)) {
+            for (int i = first; i < end; i++) {
+                copyLine(in, index.offset(i), line, out);
+            }
+        }
+        return output.length();
+    }
+
+    // Copies the line starting at offset up to and including its newline, adding one at the end of the file
+    private static void copyLine(FileChannel in, long offset, ByteBuffer line, OutputStream out) throws IOException {
+        for (long pos = offset; ; ) {
+            line.clear();
+            int read = in.read(line, pos);
+            if (read <= 0) {
+                out.write(System.lineSeparator().getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            byte[] bytes = line.array();
+            for (int j = 0; j < read; j++) {
+                if (bytes[j] == '\n') {
+                    out.write(bytes, 0, j + 1);
+                    return;
+                }
+            }
+            out.write(bytes, 0, read);
+            pos += read;
+        }
+    }
+}
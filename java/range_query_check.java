@@ -0,0 +1,204 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Boundary check for range_query. Sorted and unsorted CSV files (side-table labels,
+ * CRLF lines and a missing final newline included) and sorted and unsorted .bin
+ * files are queried with bounds on the first and last key, one below and one above
+ * them, on a repeated key, in a gap between keys, over the whole int range and
+ * between random keys. Every answer must hold exactly the rows with keys in
+ * [low, high] in key order, equal keys in file order: CSV lines byte for byte as
+ * they are in the file, .bin rows as csv_writer writes them. Sorted files must be
+ * answered as one contiguous block:
+ *
+ *   java range_query_check [rows]
+ */
+public class range_query_check {
+    private static final int RANDOM_QUERIES = 20;
+
+    // One line of a source file: its key and its bytes as range_query should write them
+    private static final class Line {
+        final int key;
+        final byte[] bytes;
+
+        Line(int key, byte[] bytes) {
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, sort_check.DEFAULT_ROWS);
+        record_store packed = sort_check.generate(n);
+        record_store labelled = sort_check.copy(packed);
+        for (int i = 0; i < n; i += 13) {
+            labelled.labels[i] = labelled.label("Label " + i + ", \u00e9");
+        }
+        try {
+            expectQueries("sorted CSV", csv(sort_check.reference(labelled), "sorted.csv", "\n", true), true);
+            expectQueries("unsorted CSV", csv(labelled, "unsorted.csv", "\n", true), false);
+            expectQueries("sorted CSV with CRLF lines and no final newline",
+                    csv(sort_check.reference(labelled), "sorted_crlf.csv", "\r\n", false), true);
+            expectQueries("unsorted CSV without a final newline", csv(labelled, "unsorted_open.csv", "\n", false),
+                    false);
+            expectQueries("sorted .bin", binary(sort_check.reference(packed), "sorted"), true);
+            expectQueries("unsorted .bin", binary(packed, "unsorted"), false);
+        } catch (IOException e) {
+            sort_check.fail("range query", e.getMessage());
+        }
+    }
+
+    private static void expectQueries(String what, File source, boolean sorted) throws IOException {
+        File indexFile = key_index.indexFileFor(source);
+        indexFile.deleteOnExit();
+        List<Line> lines = lines(source);
+        int[] order = keyOrder(lines);
+        int[] distinct = new int[order.length];
+        int count = 0;
+        for (int i : order) {
+            int key = lines.get(i).key;
+            if (count == 0 || distinct[count - 1] != key) distinct[count++] = key;
+        }
+        int lowest = distinct[0], highest = distinct[count - 1];
+
+        List<int[]> queries = new ArrayList<>();
+        queries.add(new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE});
+        queries.add(new int[] {lowest, lowest});
+        queries.add(new int[] {highest, highest});
+        queries.add(new int[] {Integer.MIN_VALUE, lowest - 1});
+        queries.add(new int[] {lowest - 1, lowest});
+        queries.add(new int[] {highest, highest + 1});
+        queries.add(new int[] {highest + 1, Integer.MAX_VALUE});
+        queries.add(new int[] {lowest + 1, highest - 1});
+        for (int i = 1; i < count; i++) {
+            if (distinct[i] - distinct[i - 1] > 1) {
+                queries.add(new int[] {distinct[i - 1] + 1, distinct[i] - 1}); // a gap between keys
+                break;
+            }
+        }
+        SplittableRandom random = new SplittableRandom(sort_check.SEED);
+        for (int q = 0; q < RANDOM_QUERIES; q++) {
+            int a = distinct[random.nextInt(count)], b = distinct[random.nextInt(count)];
+            queries.add(new int[] {Math.min(a, b), Math.max(a, b)});
+        }
+
+        File output = new File("../temp", "range_query_check_out.csv");
+        output.deleteOnExit();
+        try (key_index index = key_index.open(source)) {
+            for (int[] query : queries) {
+                int low = query[0], high = query[1];
+                String range = what + ", [" + low + ", " + high + "]";
+                range_query.Result result = range_query.query(index, source, low, high, output);
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                long rows = 0;
+                for (int i : order) {
+                    Line line = lines.get(i);
+                    if (line.key >= low && line.key <= high) {
+                        expected.write(line.bytes);
+                        rows++;
+                    }
+                }
+                if (result.rows != rows || result.contiguous != sorted) {
+                    sort_check.fail(range, result.rows + " rows" + (result.contiguous ? " as a block" : " row by row")
+                            + ", expected " + rows + (sorted ? " as a block" : " row by row"));
+                }
+                byte[] want = expected.toByteArray(), got = Files.readAllBytes(output.toPath());
+                long at = mismatch(want, got);
+                if (at >= 0) {
+                    sort_check.fail(range, "the output differs at byte " + at + " (" + got.length + " bytes, expected "
+                            + want.length + ")");
+                }
+            }
+        }
+        output.delete();
+        System.out.println("OK " + what + ", " + queries.size() + " ranges");
+    }
+
+    // Index of the first differing byte, -1 if both are equal
+    private static long mismatch(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i] != b[i]) return i;
+        }
+        return a.length == b.length ? -1 : Math.min(a.length, b.length);
+    }
+
+    // The rows of a CSV or .bin source in file order, as range_query writes them
+    private static List<Line> lines(File source) throws IOException {
+        List<Line> lines = new ArrayList<>();
+        byte[] newline = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+        if (column_file.isColumnFile(source)) {
+            record_store rows = column_file.read(source);
+            for (int i = 0; i < rows.size(); i++) {
+                String text = rows.keys[i] + "," + rows.labelText(rows.labels[i]) + System.lineSeparator();
+                lines.add(new Line(rows.keys[i], text.getBytes(StandardCharsets.UTF_8)));
+            }
+            return lines;
+        }
+        byte[] data = Files.readAllBytes(source.toPath());
+        for (int start = 0; start < data.length; ) {
+            int end = start;
+            while (end < data.length && data[end] != '\n') end++;
+            byte[] line;
+            if (end < data.length) {
+                line = new byte[end + 1 - start];
+                System.arraycopy(data, start, line, 0, line.length);
+            } else {
+                // The last line gets a newline in the output
+                line = new byte[end - start + newline.length];
+                System.arraycopy(data, start, line, 0, end - start);
+                System.arraycopy(newline, 0, line, end - start, newline.length);
+            }
+            String text = new String(data, start, end - start, StandardCharsets.UTF_8);
+            lines.add(new Line(Integer.parseInt(text.substring(0, text.indexOf(','))), line));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    // Line numbers in key order, equal keys in file order (bottom-up merge sort)
+    private static int[] keyOrder(List<Line> lines) {
+        int n = lines.size();
+        int[] run = new int[n], tmp = new int[n];
+        for (int i = 0; i < n; i++) run[i] = i;
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width, hi = Math.min(lo + 2 * width, n);
+                System.arraycopy(run, lo, tmp, lo, hi - lo);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    run[k++] = lines.get(tmp[i]).key <= lines.get(tmp[j]).key ? tmp[i++] : tmp[j++];
+                }
+                while (i < mid) run[k++] = tmp[i++];
+                while (j < hi) run[k++] = tmp[j++];
+            }
+        }
+        return run;
+    }
+
+    // The rows as "key,label" lines with the given line ending, the last one optionally open
+    private static File csv(record_store rows, String name, String newline, boolean finalNewline) throws IOException {
+        File file = new File("../temp", "range_query_check_" + name);
+        file.getParentFile().mkdirs();
+        file.deleteOnExit();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < rows.size(); i++) {
+                String line = rows.keys[i] + "," + rows.labelText(rows.labels[i]);
+                if (i < rows.size() - 1 || finalNewline) line += newline;
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return file;
+    }
+
+    private static File binary(record_store rows, String name) throws IOException {
+        File file = new File("../temp", "range_query_check_" + name + column_file.EXTENSION);
+        file.getParentFile().mkdirs();
+        file.deleteOnExit();
+        column_file.write(rows, file, 0);
+        return file;
+    }
+}
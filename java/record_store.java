@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays row storage shared by the sorters. Keys are kept in an int[] and
+ * the lowercase labels are packed into a long[] (5 bits per character, first
+ * character in the highest bits), so sorting only ever moves primitives.
+ *
+ * Any other label (longer than 12 characters, or with characters outside a..z) is
+ * kept verbatim in the store's own side array; its long is the array index with the
+ * sign bit set, so it still moves with its row and labelText() returns the original
+ * text. The loader fills the side array, a store built over the same rows takes
+ * a copy of it (see sideLabels()), and reading it needs no lock.
+ */
+public class record_store {
+    static final int MAX_LABEL_LENGTH = 12;
+    static final int BITS_PER_CHAR = 5;
+    private static final long CHAR_MASK = (1L << BITS_PER_CHAR) - 1;
+    static final long EXTERNAL = Long.MIN_VALUE;
+
+    private static final String[] NO_SIDE_LABELS = {};
+
+    int[] keys;
+    long[] labels;
+    int size;
+    private String[] sideLabels = NO_SIDE_LABELS; // texts of this store's unpackable labels
+    private int sideCount;
+
+    record_store(int capacity) {
+        keys = new int[Math.max(capacity, 1)];
+        labels = new long[Math.max(capacity, 1)];
+    }
+
+    record_store(int[] keys, long[] labels, int size) {
+        this(keys, labels, size, NO_SIDE_LABELS);
+    }
+
+    // Rows whose side-table labels index into sideLabels (see sideLabels())
+    record_store(int[] keys, long[] labels, int size, String[] sideLabels) {
+        this.keys = keys;
+        this.labels = labels;
+        this.size = size;
+        this.sideLabels = sideLabels;
+        this.sideCount = sideLabels.length;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(int key, long label) {
+        if (size == keys.length) {
+            grow(size + 1);
+        }
+        keys[size] = key;
+        labels[size] = label;
+        size++;
+    }
+
+    void add(int key, String label) {
+        add(key, label(label));
+    }
+
+    // Removes every row and side-table label, keeping the arrays
+    void clear() {
+        size = 0;
+        sideLabels = NO_SIDE_LABELS;
+        sideCount = 0;
+    }
+
+    // A copy of the side table, for a store built over the same rows
+    String[] sideLabels() {
+        return Arrays.copyOf(sideLabels, sideCount);
+    }
+
+    // The packed label, or a new side-table entry of this store for text that does not pack
+    long label(CharSequence text) {
+        long packed = tryPack(text);
+        return packed >= 0 ? packed : addSideLabel(text.toString());
+    }
+
+    // Stores a label that cannot be packed and returns its handle
+    long addSideLabel(String text) {
+        if (sideCount == sideLabels.length) {
+            sideLabels = Arrays.copyOf(sideLabels, Math.max(8, sideCount * 2));
+        }
+        sideLabels[sideCount] = text;
+        return EXTERNAL | sideCount++;
+    }
+
+    // Appends the other store's side table to this one and returns the index of its first
+    // entry here; handles taken over from the other store move up by that amount
+    int appendSideLabels(record_store other) {
+        int base = sideCount;
+        for (int i = 0; i < other.sideCount; i++) {
+            addSideLabel(other.sideLabels[i]);
+        }
+        return base;
+    }
+
+    // The text of one of this store's labels
+    String labelText(long label) {
+        return isExternal(label) ? sideLabels[(int) (label & Integer.MAX_VALUE)] : unpackLabel(label);
+    }
+
+    void swap(int i, int j) {
+        int tempKey = keys[i];
+        keys[i] = keys[j];
+        keys[j] = tempKey;
+
+        long tempLabel = labels[i];
+        labels[i] = labels[j];
+        labels[j] = tempLabel;
+    }
+
+    // Formats one row the way the CSV files store it
+    String format(int i) {
+        return keys[i] + "," + labelText(labels[i]);
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity > keys.length) {
+            grow(capacity);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        long newCapacity = Math.max(minCapacity, keys.length + (keys.length >> 1) + 1L);
+        if (newCapacity > Integer.MAX_VALUE - 8) {
+            if (minCapacity > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("Record store is full: " + size + " rows");
+            }
+            newCapacity = Integer.MAX_VALUE - 8;
+        }
+        int[] newKeys = new int[(int) newCapacity];
+        long[] newLabels = new long[(int) newCapacity];
+        System.arraycopy(keys, 0, newKeys, 0, size);
+        System.arraycopy(labels, 0, newLabels, 0, size);
+        keys = newKeys;
+        labels = newLabels;
+    }
+
+    // 1-12 letters a..z packed as in packLabel, -1 for any other text
+    private static long tryPack(CharSequence label) {
+        int length = label.length();
+        if (length > MAX_LABEL_LENGTH) return -1;
+        long packed = 0;
+        for (int i = 0; i < length; i++) {
+            char c = label.charAt(i);
+            if (c < 'a' || c > 'z') return -1;
+            packed |= (long) (c - 'a' + 1) << shift(i);
+        }
+        return packed;
+    }
+
+    // Packs 'a'..'z' as 1..26 so shorter labels compare lower, like String.compareTo;
+    // labels that do not fit belong in a store's side array (see label())
+    static long packLabel(CharSequence label) {
+        long packed = tryPack(label);
+        if (packed < 0) {
+            throw new IllegalArgumentException("Label is not 1-12 lowercase letters: " + label);
+        }
+        return packed;
+    }
+
+    static boolean isExternal(long label) {
+        return label < 0;
+    }
+
+    // The text of a packed label; side-table labels are read with labelText()
+    static String unpackLabel(long packed) {
+        if (isExternal(packed)) {
+            throw new IllegalArgumentException("Label " + (packed & Integer.MAX_VALUE)
+                    + " is in a store's side table");
+        }
+        StringBuilder sb = new StringBuilder(MAX_LABEL_LENGTH);
+        for (int i = 0; i < MAX_LABEL_LENGTH; i++) {
+            int code = (int) ((packed >>> shift(i)) & CHAR_MASK);
+            if (code == 0) break;
+            sb.append((char) ('a' + code - 1));
+        }
+        return sb.toString();
+    }
+
+    // Bit offset of the character at the given label position
+    static int shift(int position) {
+        return (MAX_LABEL_LENGTH - 1 - position) * BITS_PER_CHAR;
+    }
+}
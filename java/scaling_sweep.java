@@ -0,0 +1,361 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs algorithms over a geometric series of dataset sizes and fits the timings
+ * against n, n log n and n^2:
+ *
+ *   java scaling_sweep [--algorithms=quick_sort,merge_sort,binary_search] [--min=1000]
+ *                      [--max=10000000] [--sizes=10] [--warmup=2] [--reps=5]
+ *                      [--seed=2510] [--heap=<jvm -Xmx value>] [--timeout=<seconds>]
+ *
+ * Datasets are created as ../datasets/dataset_<n>.bin with dataset_generator (or
+ * reused if present). Every (algorithm, size) pair runs in a fresh JVM that loads
+ * the dataset, then times warmup + reps runs of the kernel on fresh copies of the
+ * rows; loading, copying and writing are not timed. The results table, the
+ * constants fitted in log space and the measured exponent of n are written to
+ * ../outputs/scaling_sweep.csv and ../outputs/scaling_sweep.txt. The "vs fit" column is each median divided by the
+ * best model's prediction, so a size where it jumps marks a cache or heap cliff.
+ */
+public class scaling_sweep {
+    static final String[] ALGORITHMS = {"quick_sort", "intro_quick_sort", "parallel_quick_sort", "merge_sort",
+            "adaptive_merge_sort", "parallel_merge_sort", "radix_sort", "binary_search"};
+    private static final String[] MODELS = {"n", "n log n", "n^2"};
+    private static final double CLIFF_RATIO = 1.5;
+
+    // One measured (algorithm, size) pair
+    private static class Result {
+        String algorithm;
+        long n;
+        double medianMs = Double.NaN;
+        double minMs = Double.NaN;
+        String status = "ok";
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--run")) {
+            runChild(args);
+            return;
+        }
+
+        String[] algorithms = {"quick_sort", "merge_sort", "binary_search"};
+        long min = 1_000, max = 10_000_000, seed = 2510;
+        int sizes = 10, warmup = 2, reps = 5, timeoutSeconds = 600;
+        String heap = null;
+        long[] series;
+        try {
+            for (String arg : args) {
+                String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("--algorithms=")) {
+                    algorithms = value.split(",");
+                    for (String algorithm : algorithms) {
+                        if (!Arrays.asList(ALGORITHMS).contains(algorithm)) {
+                            throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+                        }
+                    }
+                } else if (arg.startsWith("--min=")) {
+                    min = Long.parseLong(value);
+                } else if (arg.startsWith("--max=")) {
+                    max = Long.parseLong(value);
+                } else if (arg.startsWith("--sizes=")) {
+                    sizes = Integer.parseInt(value);
+                } else if (arg.startsWith("--warmup=")) {
+                    warmup = Integer.parseInt(value);
+                } else if (arg.startsWith("--reps=")) {
+                    reps = Integer.parseInt(value);
+                } else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(value);
+                } else if (arg.startsWith("--heap=")) {
+                    heap = value;
+                } else if (arg.startsWith("--timeout=")) {
+                    timeoutSeconds = Integer.parseInt(value);
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            if (min < 2 || max < min || sizes < 1 || warmup < 0 || reps < 1 || timeoutSeconds < 1) {
+                throw new IllegalArgumentException("Sizes, repetitions and timeout must be positive, with min <= max");
+            }
+            series = geometricSeries(min, max, sizes);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid option: " + e.getMessage());
+            System.out.println("Usage: java scaling_sweep [--algorithms=a,b,...] [--min=n] [--max=n] [--sizes=count]"
+                    + " [--warmup=runs] [--reps=runs] [--seed=seed] [--heap=size] [--timeout=seconds]");
+            return;
+        }
+
+        List<Result> results = new ArrayList<>();
+        try {
+            new File("../datasets").mkdirs();
+            new File("../outputs").mkdirs();
+            for (long n : series) {
+                File dataset = new File("../datasets/dataset_" + n + column_file.EXTENSION);
+                if (!dataset.exists()) {
+                    System.out.println("Generating " + dataset.getPath());
+                    dataset_generator.generateDataset(n, dataset.getPath(), seed,
+                            Runtime.getRuntime().availableProcessors(), true);
+                }
+                for (String algorithm : algorithms) {
+                    Result result = runForked(algorithm, dataset, n, warmup, reps, heap, timeoutSeconds);
+                    results.add(result);
+                    System.out.printf("%-20s n=%-10d median %10.3f ms  %s%n",
+                            algorithm, n, result.medianMs, result.status);
+                }
+            }
+            writeReport(results, algorithms);
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Sweep failed: " + e.getMessage());
+        }
+    }
+
+    // Sizes from min to max with a constant ratio, rounded to two significant digits. Where
+    // rounding maps neighbouring sizes to the same value the later one moves up by one, so
+    // the series always has count distinct sizes
+    static long[] geometricSeries(long min, long max, int count) {
+        long[] sizes = new long[count];
+        long previous = 0, limit = max;
+        for (int i = 0; i < count; i++) {
+            double exact = count == 1 ? min : min * Math.pow((double) max / min, (double) i / (count - 1));
+            long scale = 1;
+            while (exact >= 100 * scale) scale *= 10;
+            long n = Math.max(2, Math.round(exact / scale) * scale);
+            if (i == count - 1) limit = Math.max(max, n);
+            n = Math.max(n, previous + 1);
+            sizes[i] = previous = n;
+        }
+        if (sizes[count - 1] > limit) {
+            throw new IllegalArgumentException(count + " distinct sizes do not fit between " + min + " and " + max);
+        }
+        return sizes;
+    }
+
+    private static Result runForked(String algorithm, File dataset, long n, int warmup, int reps, String heap,
+                                    int timeoutSeconds) throws IOException, InterruptedException {
+        Result result = new Result();
+        result.algorithm = algorithm;
+        result.n = n;
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        if (heap != null) command.add("-Xmx" + heap);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("scaling_sweep");
+        command.add("--run");
+        command.add(algorithm);
+        command.add(dataset.getPath());
+        command.add(Integer.toString(warmup));
+        command.add(Integer.toString(reps));
+
+        File log = File.createTempFile("scaling_sweep", ".out");
+        try {
+            Process child = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+            if (!child.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                child.destroyForcibly().waitFor();
+                result.status = "timeout";
+                return result;
+            }
+
+            String times = null;
+            String lastLine = "";
+            try (BufferedReader reader = new BufferedReader(new FileReader(log))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("times_ms ")) times = line.substring("times_ms ".length());
+                    else if (!line.isEmpty()) lastLine = line;
+                }
+            }
+            if (child.exitValue() != 0 || times == null) {
+                result.status = lastLine.contains("OutOfMemoryError") ? "out of memory" : "failed: " + lastLine;
+                return result;
+            }
+
+            String[] parts = times.trim().split(" ");
+            double[] ms = new double[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                ms[i] = Double.parseDouble(parts[i]);
+            }
+            // Insertion sort of the few timings for min and median
+            for (int i = 1; i < ms.length; i++) {
+                double t = ms[i];
+                int j = i - 1;
+                while (j >= 0 && ms[j] > t) {
+                    ms[j + 1] = ms[j];
+                    j--;
+                }
+                ms[j + 1] = t;
+            }
+            result.minMs = ms[0];
+            result.medianMs = ms.length % 2 == 1 ? ms[ms.length / 2] : (ms[ms.length / 2 - 1] + ms[ms.length / 2]) / 2;
+            return result;
+        } finally {
+            log.delete();
+        }
+    }
+
+    // Child JVM: load once, then time the kernel on fresh copies; prints "times_ms t1 t2 ..."
+    private static void runChild(String[] args) {
+        String algorithm = args[1];
+        File dataset = new File(args[2]);
+        int warmup = Integer.parseInt(args[3]);
+        int reps = Integer.parseInt(args[4]);
+
+        record_store rows;
+        try {
+            rows = csv_loader.load(dataset);
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        int n = rows.size();
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        record_store work = new record_store(new int[n], new long[n], n);
+
+        // Binary search looks up existing keys in random order in the sorted keys
+        int[] sorted = null;
+        int[] targets = null;
+        if (algorithm.equals("binary_search")) {
+            record_store copy = new record_store(Arrays.copyOf(rows.keys, n), Arrays.copyOf(rows.labels, n), n);
+            radix_sort.sort(copy, parallelism);
+            sorted = Arrays.copyOf(copy.keys, n);
+            targets = new int[n];
+            SplittableRandom random = new SplittableRandom(n);
+            for (int i = 0; i < n; i++) {
+                targets[i] = sorted[random.nextInt(n)];
+            }
+        }
+
+        StringBuilder times = new StringBuilder("times_ms");
+        long checksum = 0;
+        for (int run = 0; run < warmup + reps; run++) {
+            System.arraycopy(rows.keys, 0, work.keys, 0, n);
+            System.arraycopy(rows.labels, 0, work.labels, 0, n);
+            long start = System.nanoTime();
+            switch (algorithm) {
+                case "quick_sort":
+                    quick_sort.quickSort(work, 0, n - 1);
+                    break;
+                case "intro_quick_sort":
+                    intro_quick_sort.sort(work, intro_quick_sort.Pivot.MEDIAN_OF_3, intro_quick_sort.DEFAULT_CUTOFF);
+                    break;
+                case "parallel_quick_sort":
+                    parallel_quick_sort.sort(work, parallelism, intro_quick_sort.Pivot.MEDIAN_OF_3,
+                            intro_quick_sort.DEFAULT_CUTOFF);
+                    break;
+                case "merge_sort":
+                    merge_sort.mergeSort(work, 0, n - 1);
+                    break;
+                case "adaptive_merge_sort":
+                    adaptive_merge_sort.sort(work);
+                    break;
+                case "parallel_merge_sort":
+                    parallel_merge_sort.sort(work, parallelism, parallel_merge_sort.DEFAULT_CUTOFF);
+                    break;
+                case "radix_sort":
+                    radix_sort.sort(work, 1);
+                    break;
+                case "binary_search":
+                    for (int target : targets) {
+                        checksum += binary_search.binarySearch(sorted, target);
+                    }
+                    break;
+                default:
+                    System.out.println("Unknown algorithm: " + algorithm);
+                    System.exit(1);
+            }
+            long end = System.nanoTime();
+            if (run >= warmup) {
+                times.append(' ').append((end - start) / 1_000_000.0);
+            }
+        }
+        binary_search.sink = checksum;
+        System.out.println(times);
+    }
+
+    static double model(int m, double n) {
+        switch (m) {
+            case 0: return n;
+            case 1: return n * Math.log(n) / Math.log(2);
+            default: return n * n;
+        }
+    }
+
+    private static void writeReport(List<Result> results, String[] algorithms) throws IOException {
+        // Fit log t = log c + log f(n) by least squares, so every size weighs the same;
+        // the error is the rms of the log residuals, shown as a typical factor off the fit
+        int a = algorithms.length;
+        double[][] constants = new double[a][MODELS.length];
+        double[][] errors = new double[a][MODELS.length];
+        double[] exponents = new double[a];
+        int[] best = new int[a];
+        for (int i = 0; i < a; i++) {
+            for (int m = 0; m < MODELS.length; m++) {
+                double sum = 0;
+                int count = 0;
+                for (Result r : results) {
+                    if (!r.algorithm.equals(algorithms[i]) || !(r.medianMs > 0)) continue;
+                    sum += Math.log(r.medianMs) - Math.log(model(m, r.n));
+                    count++;
+                }
+                double logC = count > 0 ? sum / count : Double.NaN;
+                double sq = 0;
+                for (Result r : results) {
+                    if (!r.algorithm.equals(algorithms[i]) || !(r.medianMs > 0)) continue;
+                    double residual = Math.log(r.medianMs) - Math.log(model(m, r.n)) - logC;
+                    sq += residual * residual;
+                }
+                constants[i][m] = Math.exp(logC);
+                errors[i][m] = count > 0 ? Math.exp(Math.sqrt(sq / count)) : Double.NaN;
+                if (errors[i][m] < errors[i][best[i]] || Double.isNaN(errors[i][best[i]])) best[i] = m;
+            }
+
+            // Slope of log t over log n: about 1 for n, a little above for n log n, 2 for n^2
+            double sx = 0, sy = 0, sxx = 0, sxy = 0;
+            int count = 0;
+            for (Result r : results) {
+                if (!r.algorithm.equals(algorithms[i]) || !(r.medianMs > 0)) continue;
+                double x = Math.log(r.n), y = Math.log(r.medianMs);
+                sx += x;
+                sy += y;
+                sxx += x * x;
+                sxy += x * y;
+                count++;
+            }
+            exponents[i] = count > 1 ? (count * sxy - sx * sy) / (count * sxx - sx * sx) : Double.NaN;
+        }
+
+        File csv = new File("../outputs/scaling_sweep.csv");
+        File txt = new File("../outputs/scaling_sweep.txt");
+        try (PrintWriter table = new PrintWriter(new FileWriter(csv));
+             PrintWriter report = new PrintWriter(new FileWriter(txt))) {
+            table.println("algorithm,n,median_ms,min_ms,vs_fit,status");
+            report.printf("%-20s %12s %14s %14s %8s  %s%n", "Algorithm", "n", "Median (ms)", "Min (ms)", "vs fit", "");
+            for (Result r : results) {
+                int i = Arrays.asList(algorithms).indexOf(r.algorithm);
+                double ratio = r.medianMs / (constants[i][best[i]] * model(best[i], r.n));
+                table.printf("%s,%d,%.3f,%.3f,%.3f,%s%n", r.algorithm, r.n, r.medianMs, r.minMs, ratio, r.status);
+                String flag = !r.status.equals("ok") ? r.status : ratio >= CLIFF_RATIO ? "<- above fit" : "";
+                report.printf("%-20s %12d %14.3f %14.3f %8.2f  %s%n", r.algorithm, r.n, r.medianMs, r.minMs, ratio, flag);
+            }
+
+            report.println();
+            report.println("Fitted time(n) = c * f(n) in ms (typical factor off the fit), measured exponent of n");
+            for (int i = 0; i < a; i++) {
+                report.printf("%-20s", algorithms[i]);
+                for (int m = 0; m < MODELS.length; m++) {
+                    report.printf("  %s: c=%.4e (x%.2f)%s", MODELS[m], constants[i][m], errors[i][m],
+                            m == best[i] ? " *" : "");
+                }
+                report.printf("  exponent %.2f%n", exponents[i]);
+            }
+            report.println("* best fit");
+        }
+        System.out.println("Table saved to: " + csv.getPath());
+        System.out.println("Report saved to: " + txt.getPath());
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Alternative search indexes built from the sorted key array that binary_search
+ * loads. Every layout answers the same question as binary_search.binarySearch:
+ * the index of the target in the sorted array, or -1 when it is absent (with
+ * repeated keys the layouts other than classic return the first match).
+ *
+ *   classic    - binary_search.binarySearch, the textbook branchy search
+ *   branchless - lower bound whose loop body is a conditional move, no branch to mispredict
+ *   eytzinger  - keys stored in BFS order, so the first levels of every search share cache lines
+ *   btree      - static B-tree with 16 keys (one 64-byte cache line) per node
+ */
+public class search_layouts {
+    static final String[] NAMES = {"classic", "branchless", "eytzinger", "btree"};
+
+    interface Layout {
+        int search(int target);
+    }
+
+    static Layout create(String name, int[] sorted) {
+        switch (name) {
+            case "classic":
+                return target -> binary_search.binarySearch(sorted, target);
+            case "branchless":
+                return new Branchless(sorted);
+            case "eytzinger":
+                return new Eytzinger(sorted);
+            case "btree":
+                return new BTree(sorted);
+            default:
+                throw new IllegalArgumentException("Unknown layout: " + name);
+        }
+    }
+
+    static final class Branchless implements Layout {
+        private final int[] keys;
+
+        Branchless(int[] sorted) {
+            keys = sorted;
+        }
+
+        @Override
+        public int search(int target) {
+            int[] a = keys;
+            int n = a.length;
+            if (n == 0) return -1;
+            int base = 0;
+            while (n > 1) {
+                int half = n >>> 1;
+                base = a[base + half - 1] < target ? base + half : base;
+                n -= half;
+            }
+            if (a[base] < target) base++;
+            return base < a.length && a[base] == target ? base : -1;
+        }
+    }
+
+    static final class Eytzinger implements Layout {
+        private final int[] tree;   // 1-based BFS order, children of k at 2k and 2k+1
+        private final int[] rank;   // index in the sorted array of each tree slot
+        private final int n;
+
+        Eytzinger(int[] sorted) {
+            n = sorted.length;
+            tree = new int[n + 1];
+            rank = new int[n + 1];
+            fill(sorted, 0, 1);
+        }
+
+        // In-order walk of the implicit tree hands out the sorted keys
+        private int fill(int[] sorted, int next, int k) {
+            if (k <= n) {
+                next = fill(sorted, next, 2 * k);
+                tree[k] = sorted[next];
+                rank[k] = next++;
+                next = fill(sorted, next, 2 * k + 1);
+            }
+            return next;
+        }
+
+        @Override
+        public int search(int target) {
+            int[] t = tree;
+            int k = 1;
+            while (k <= n) {
+                k = 2 * k + (t[k] < target ? 1 : 0);
+            }
+            // Undo the right turns taken after the last left turn to get the lower bound slot
+            k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+            return k != 0 && t[k] == target ? rank[k] : -1;
+        }
+    }
+
+    static final class BTree implements Layout {
+        private static final int B = 16;
+
+        private final int[] keys;       // node k holds keys[k*B .. k*B+B), padded with MAX_VALUE
+        private final int[] positions;  // index in the sorted array for each slot, n for padding
+        private final int nodes;
+        private final int n;
+        private int next;
+
+        BTree(int[] sorted) {
+            n = sorted.length;
+            nodes = (n + B - 1) / B;
+            keys = new int[nodes * B];
+            positions = new int[nodes * B];
+            fill(sorted, 0);
+        }
+
+        private static int child(int node, int i) {
+            return node * (B + 1) + i + 1;
+        }
+
+        private void fill(int[] sorted, int node) {
+            if (node >= nodes) return;
+            for (int i = 0; i < B; i++) {
+                fill(sorted, child(node, i));
+                int slot = node * B + i;
+                if (next < n) {
+                    keys[slot] = sorted[next];
+                    positions[slot] = next++;
+                } else {
+                    keys[slot] = Integer.MAX_VALUE;
+                    positions[slot] = n;
+                }
+            }
+            fill(sorted, child(node, B));
+        }
+
+        @Override
+        public int search(int target) {
+            int[] k = keys;
+            int best = -1;
+            int node = 0;
+            while (node < nodes) {
+                int base = node * B;
+                // Count the keys below the target without branching on each one
+                int i = 0;
+                for (int j = 0; j < B; j++) {
+                    i += k[base + j] < target ? 1 : 0;
+                }
+                if (i < B) best = base + i;
+                node = child(node, i);
+            }
+            return best >= 0 && positions[best] < n && k[best] == target ? positions[best] : -1;
+        }
+    }
+}
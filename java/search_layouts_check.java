@@ -0,0 +1,103 @@
+import java.util.SplittableRandom;
+
+/**
+ * Checks every search_layouts layout against binary_search.binarySearch on the
+ * same sorted keys. Each key present, each gap between keys, keys below the first
+ * and above the last (Integer.MIN_VALUE and MAX_VALUE included) are searched; a
+ * layout must miss exactly where binarySearch misses and otherwise return the
+ * first row of the key (classic may return any row of it). Sizes run around the
+ * B-tree node width of 16 keys and its powers, so partly filled and padded nodes
+ * are covered, with distinct, repeated and extreme keys:
+ *
+ *   java search_layouts_check [rows]
+ */
+public class search_layouts_check {
+    private static final int DEFAULT_ROWS = 20_000;
+    private static final int B = 16;
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, DEFAULT_ROWS);
+        SplittableRandom random = new SplittableRandom(sort_check.SEED);
+        int[] sizes = {0, 1, 2, B - 1, B, B + 1, 2 * B + 1, B * B - 1, B * B, B * B + 1,
+                B * (B + 1), B * (B + 1) + 1, (B + 1) * (B + 1) * (B + 1), n};
+        for (int size : sizes) {
+            // Every third value, so each key has a missing neighbour on both sides
+            int[] spaced = new int[size];
+            for (int i = 0; i < size; i++) spaced[i] = 3 * i - size;
+            expectSame("spaced keys", spaced);
+
+            // Few distinct keys: long runs of the same key
+            int[] repeated = new int[size];
+            for (int i = 0; i < size; i++) repeated[i] = random.nextInt(Math.max(1, size / 8));
+            expectSame("repeated keys", sorted(repeated));
+
+            // The whole int range, with the padding value of B-tree nodes as a real key
+            int[] extreme = new int[size];
+            for (int i = 0; i < size; i++) extreme[i] = random.nextInt();
+            if (size > 0) extreme[0] = Integer.MAX_VALUE;
+            if (size > 1) extreme[1] = Integer.MIN_VALUE;
+            expectSame("keys across the int range", sorted(extreme));
+        }
+    }
+
+    private static void expectSame(String what, int[] keys) {
+        String description = what + ", " + keys.length + " keys";
+        for (String name : search_layouts.NAMES) {
+            search_layouts.Layout layout = search_layouts.create(name, keys);
+            for (int i = 0; i < keys.length; i++) {
+                expectSearch(description, name, layout, keys, keys[i]);
+                if (keys[i] != Integer.MIN_VALUE) expectSearch(description, name, layout, keys, keys[i] - 1);
+                if (keys[i] != Integer.MAX_VALUE) expectSearch(description, name, layout, keys, keys[i] + 1);
+            }
+            expectSearch(description, name, layout, keys, Integer.MIN_VALUE);
+            expectSearch(description, name, layout, keys, Integer.MAX_VALUE);
+            expectSearch(description, name, layout, keys, 0);
+        }
+        System.out.println("OK " + description);
+    }
+
+    private static void expectSearch(String what, String name, search_layouts.Layout layout, int[] keys,
+                                     int target) {
+        int expected = binary_search.binarySearch(keys, target);
+        int actual = layout.search(target);
+        if (expected < 0) {
+            if (actual != -1) {
+                sort_check.fail(what, name + " finds missing key " + target + " at " + actual);
+            }
+            return;
+        }
+        if (expected >= keys.length || keys[expected] != target) {
+            sort_check.fail(what, "binarySearch returns " + expected + " for key " + target);
+        }
+        int first = firstIndex(keys, target);
+        boolean found = actual >= 0 && actual < keys.length && keys[actual] == target;
+        if (!found || (!name.equals("classic") && actual != first)) {
+            sort_check.fail(what, name + " returns " + actual + " for key " + target + ", its first row is " + first);
+        }
+    }
+
+    // Lowest index holding the key, by linear scan back from binarySearch's hit
+    private static int firstIndex(int[] keys, int target) {
+        int i = binary_search.binarySearch(keys, target);
+        while (i > 0 && keys[i - 1] == target) i--;
+        return i;
+    }
+
+    // The keys in ascending order (bottom-up merge sort)
+    private static int[] sorted(int[] keys) {
+        int n = keys.length;
+        int[] run = keys.clone();
+        int[] tmp = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width, hi = Math.min(lo + 2 * width, n);
+                System.arraycopy(run, lo, tmp, lo, hi - lo);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) run[k++] = tmp[i] <= tmp[j] ? tmp[i++] : tmp[j++];
+                while (i < mid) run[k++] = tmp[i++];
+                while (j < hi) run[k++] = tmp[j++];
+            }
+        }
+        return run;
+    }
+}
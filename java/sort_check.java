@@ -0,0 +1,146 @@
+import java.io.*;
+import java.util.SplittableRandom;
+
+/**
+ * Shared helpers for the *_check programs. Each check generates a dataset with
+ * many repeated keys (so stability shows), sorts it with the variant under test
+ * and compares the result with the classic merge_sort.mergeSort on the same rows.
+ * The first difference is printed and the program exits with status 1; a passing
+ * check prints one OK line per case.
+ */
+public class sort_check {
+    static final int DEFAULT_ROWS = 100_000;
+    static final long SEED = 2510;
+
+    // Row count from the first argument, or the default
+    static int rows(String[] args, int defaultRows) {
+        if (args.length == 0) return defaultRows;
+        try {
+            int rows = Integer.parseInt(args[0]);
+            if (rows > 0) return rows;
+        } catch (NumberFormatException e) {
+            // fall through to the usage line
+        }
+        System.out.println("Usage: java <check> [rows]");
+        System.exit(2);
+        return 0;
+    }
+
+    // Keys drawn from [0, keyRange) and labels of 1-12 random lowercase letters
+    static record_store generate(int n, int keyRange, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        record_store store = new record_store(n);
+        char[] label = new char[record_store.MAX_LABEL_LENGTH];
+        for (int i = 0; i < n; i++) {
+            int length = 1 + random.nextInt(record_store.MAX_LABEL_LENGTH);
+            for (int c = 0; c < length; c++) {
+                label[c] = (char) ('a' + random.nextInt(26));
+            }
+            store.add(random.nextInt(keyRange), new String(label, 0, length));
+        }
+        return store;
+    }
+
+    // A quarter as many distinct keys as rows, so most keys repeat
+    static record_store generate(int n) {
+        return generate(n, Math.max(1, n / 4), SEED);
+    }
+
+    // The rows in reverse order
+    static record_store reversed(record_store store) {
+        int n = store.size();
+        record_store reversed = new record_store(n);
+        for (int i = n - 1; i >= 0; i--) {
+            reversed.add(store.keys[i], store.labels[i]);
+        }
+        return reversed;
+    }
+
+    static record_store copy(record_store store) {
+        return new record_store(store.keys.clone(), store.labels.clone(), store.size(), store.sideLabels());
+    }
+
+    // The classic stable merge sort every variant is compared with
+    static record_store reference(record_store store) {
+        record_store sorted = copy(store);
+        if (sorted.size() > 1) merge_sort.mergeSort(sorted, 0, sorted.size() - 1);
+        return sorted;
+    }
+
+    // Same rows in the same order
+    static void expectIdentical(String what, record_store expected, record_store actual) {
+        expectSize(what, expected, actual);
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.keys[i] != actual.keys[i] || expected.labels[i] != actual.labels[i]) {
+                fail(what, "row " + (i + 1) + ": expected " + expected.format(i) + ", got " + actual.format(i));
+            }
+        }
+        System.out.println("OK " + what);
+    }
+
+    // Same keys in the same order and, for every key, the same labels in any order
+    // (for sorts that are not stable)
+    static void expectSameRows(String what, record_store expected, record_store actual) {
+        expectSize(what, expected, actual);
+        int n = expected.size();
+        for (int start = 0; start < n; ) {
+            int end = start;
+            while (end < n && expected.keys[end] == expected.keys[start]) end++;
+            for (int i = start; i < end; i++) {
+                if (actual.keys[i] != expected.keys[i]) {
+                    fail(what, "row " + (i + 1) + ": expected key " + expected.keys[i] + ", got " + actual.keys[i]);
+                }
+            }
+            long[] want = sortedLabels(expected.labels, start, end);
+            long[] got = sortedLabels(actual.labels, start, end);
+            for (int i = 0; i < want.length; i++) {
+                if (want[i] != got[i]) {
+                    fail(what, "key " + expected.keys[start] + " (rows " + (start + 1) + " to " + end
+                            + ") has different labels");
+                }
+            }
+            start = end;
+        }
+        System.out.println("OK " + what);
+    }
+
+    // Labels of [start, end) in ascending order (bottom-up merge sort, runs can be long)
+    private static long[] sortedLabels(long[] labels, int start, int end) {
+        int n = end - start;
+        long[] run = new long[n];
+        long[] tmp = new long[n];
+        System.arraycopy(labels, start, run, 0, n);
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n - width; lo += 2 * width) {
+                int mid = lo + width, hi = Math.min(lo + 2 * width, n);
+                System.arraycopy(run, lo, tmp, lo, hi - lo);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) run[k++] = tmp[i] <= tmp[j] ? tmp[i++] : tmp[j++];
+                while (i < mid) run[k++] = tmp[i++];
+                while (j < hi) run[k++] = tmp[j++];
+            }
+        }
+        return run;
+    }
+
+    private static void expectSize(String what, record_store expected, record_store actual) {
+        if (expected.size() != actual.size()) {
+            fail(what, "expected " + expected.size() + " rows, got " + actual.size());
+        }
+    }
+
+    static void fail(String what, String message) {
+        System.out.println("FAIL " + what + ": " + message);
+        System.exit(1);
+    }
+
+    // Writes the rows as a dataset CSV under ../temp, removed when the JVM exits
+    static File writeCSV(record_store store, String name) throws IOException {
+        File dir = new File("../temp");
+        dir.mkdirs();
+        File file = new File(dir, name);
+        file.deleteOnExit();
+        csv_writer.write(store, file.getPath());
+        return file;
+    }
+}
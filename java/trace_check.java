@@ -0,0 +1,121 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Round-trip check for the --events traces. merge_sort_step and quick_sort_step
+ * run on a generated slice once with full snapshots and once with --events; every
+ * step of each trace is then rebuilt with trace_replay and must match the snapshot
+ * of the same step, and the trace must end where the snapshots end:
+ *
+ *   java trace_check [rows]
+ */
+public class trace_check {
+    private static final int DEFAULT_ROWS = 200;
+
+    public static void main(String[] args) {
+        int n = sort_check.rows(args, DEFAULT_ROWS);
+        try {
+            new File("../datasets").mkdirs(); // the step tools read their input relative to it
+            File input = sort_check.writeCSV(sort_check.generate(n), "trace_check.csv");
+            String name = "../temp/" + input.getName();
+            String range = "1_" + n;
+
+            // merge_sort_step: "Step k: <description>" and "Array: [...]" per step, from step 1
+            quietly(() -> merge_sort_step.main(new String[] {name, "1", Integer.toString(n)}));
+            quietly(() -> merge_sort_step.main(new String[] {name, "1", Integer.toString(n), "--events"}));
+            List<String> snapshots = new ArrayList<>();
+            for (String line : readLines(output("merge_sort_step_" + range + ".txt"))) {
+                if (line.startsWith("Step ")) {
+                    snapshots.add(line);
+                } else if (line.startsWith("Array: ")) {
+                    snapshots.set(snapshots.size() - 1, snapshots.get(snapshots.size() - 1) + "\n" + line);
+                }
+            }
+            expectReplay("merge_sort_step", output("merge_sort_step_" + range + ".log"), 1, snapshots);
+
+            // quick_sort_step: "[...]" for step 0, then "pi=<pivot> [...]" per partition
+            quietly(() -> quick_sort_step.main(new String[] {name, "1", Integer.toString(n)}));
+            quietly(() -> quick_sort_step.main(new String[] {name, "1", Integer.toString(n), "--events"}));
+            snapshots = readLines(output("quick_sort_step_" + range + ".txt"));
+            for (int step = 0; step < snapshots.size(); step++) {
+                String line = snapshots.get(step);
+                int array = line.indexOf('[');
+                String description = step == 0 ? "Initial Configuration" : line.substring(0, array - 1);
+                snapshots.set(step, "Step " + step + ": " + description + "\nArray: " + line.substring(array));
+            }
+            expectReplay("quick_sort_step", output("quick_sort_step_" + range + ".log"), 0, snapshots);
+        } catch (IOException e) {
+            sort_check.fail("trace round trip", e.getMessage());
+        }
+    }
+
+    // Replays every step of the trace and compares it with the snapshot of that step
+    private static void expectReplay(String tool, File trace, int firstStep, List<String> snapshots)
+            throws IOException {
+        trace.deleteOnExit();
+        String name = trace.getName().substring(0, trace.getName().length() - ".log".length());
+        int lastStep = firstStep + snapshots.size() - 1;
+        for (int step = firstStep; step <= lastStep + 1; step++) {
+            String[] replayArgs = {trace.getPath(), Integer.toString(step)};
+            quietly(() -> trace_replay.main(replayArgs));
+            File replayed = output(name + "_step_" + step + ".txt");
+            if (step > lastStep) {
+                if (replayed.delete()) {
+                    sort_check.fail(tool + " trace", "it has more steps than the " + snapshots.size() + " snapshots");
+                }
+                break;
+            }
+            if (!replayed.exists()) {
+                sort_check.fail(tool + " trace", "step " + step + " could not be replayed");
+            }
+            List<String> lines = readLines(replayed);
+            replayed.delete();
+            String actual = lines.size() < 2 ? String.join("\n", lines) : lines.get(0) + "\n" + lines.get(1);
+            String expected = snapshots.get(step - firstStep);
+            if (!actual.equals(expected)) {
+                sort_check.fail(tool + " trace", "step " + step + " " + difference(expected, actual));
+            }
+        }
+        System.out.println("OK " + tool + " trace, " + snapshots.size() + " steps replayed");
+    }
+
+    // The first differing line, or element of the array line
+    private static String difference(String expected, String actual) {
+        String[] want = expected.split("\n|, "), got = actual.split("\n|, ");
+        for (int i = 0; i < Math.min(want.length, got.length); i++) {
+            if (!want[i].equals(got[i])) {
+                return "replays \"" + got[i] + "\" where the snapshot has \"" + want[i] + "\"";
+            }
+        }
+        return "replays " + got.length + " items where the snapshot has " + want.length;
+    }
+
+    private static File output(String name) {
+        File file = new File("../outputs", name);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    // Runs a tool without its progress lines; errors still go to stderr
+    private static void quietly(Runnable tool) {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            tool.run();
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
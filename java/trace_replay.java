@@ -0,0 +1,180 @@
+import java.io.*;
+import java.util.List;
+
+/**
+ * Event-log traces written by merge_sort_step and quick_sort_step with --events,
+ * and the tool that replays them. Instead of printing the whole array after every
+ * step, a trace stores the initial rows once and then one short line per change:
+ *
+ *   # merge_sort_step trace          comment
+ *   first 1                          number of the initial step
+ *   rows 3                           row count, followed by one key/label line per row
+ *   613479842/jdaai
+ *   ...
+ *   m 0 1 3                          merge of [0, 1] and [2, 3] completed (a step)
+ *   s 4 7                            rows 4 and 7 swapped (part of the next step)
+ *   p 5                              partition finished with the pivot at index 5 (a step)
+ *
+ *   java trace_replay <trace_file> [<step>]
+ *
+ * Replaying applies the events up to the requested step and writes the full array
+ * at that point to ../outputs/<trace name>_step_<step>.txt. Without a step it only
+ * counts the steps in the trace.
+ */
+public class trace_replay {
+
+    // Writes the header and the initial rows of a trace
+    static void writeHeader(Writer writer, String tool, int firstStep, List<?> rows) throws IOException {
+        writer.write("# " + tool + " trace\n");
+        writer.write("first " + firstStep + "\n");
+        writer.write("rows " + rows.size() + "\n");
+        for (Object row : rows) {
+            writer.write(row.toString());
+            writer.write('\n');
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java trace_replay <trace_file> [<step>]");
+            return;
+        }
+
+        File traceFile = new File(args[0]);
+        if (!traceFile.exists()) {
+            traceFile = new File("../outputs", args[0]);
+        }
+
+        long step = -1;
+        if (args.length == 2) {
+            try {
+                step = Long.parseLong(args[1]);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid step: " + args[1]);
+                return;
+            }
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(traceFile), 1 << 16)) {
+            int firstStep = 0;
+            String line = reader.readLine();
+            while (line != null && line.startsWith("#")) {
+                line = reader.readLine();
+            }
+            if (line != null && line.startsWith("first ")) {
+                firstStep = Integer.parseInt(line.substring("first ".length()));
+                line = reader.readLine();
+            }
+            if (line == null || !line.startsWith("rows ")) {
+                throw new IOException("Not a trace file: " + traceFile);
+            }
+
+            int n = Integer.parseInt(line.substring("rows ".length()));
+            int[] keys = new int[n];
+            String[] labels = new String[n];
+            for (int i = 0; i < n; i++) {
+                line = reader.readLine();
+                int slash = line == null ? -1 : line.indexOf('/');
+                if (slash < 0) throw new IOException("Truncated row list in " + traceFile);
+                keys[i] = Integer.parseInt(line.substring(0, slash));
+                labels[i] = line.substring(slash + 1);
+            }
+
+            if (step >= 0 && step < firstStep) {
+                System.out.println("Steps start at " + firstStep);
+                return;
+            }
+
+            // Apply events until the requested step is reached
+            long current = firstStep;
+            String description = "Initial Configuration";
+            int[] auxKeys = null;
+            String[] auxLabels = null;
+            while (current != step && (line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] event = line.split(" ");
+                switch (event[0]) {
+                    case "s": {
+                        int i = Integer.parseInt(event[1]), j = Integer.parseInt(event[2]);
+                        int key = keys[i]; keys[i] = keys[j]; keys[j] = key;
+                        String label = labels[i]; labels[i] = labels[j]; labels[j] = label;
+                        break;
+                    }
+                    case "m": {
+                        int left = Integer.parseInt(event[1]);
+                        int mid = Integer.parseInt(event[2]);
+                        int right = Integer.parseInt(event[3]);
+                        if (auxKeys == null) {
+                            auxKeys = new int[n];
+                            auxLabels = new String[n];
+                        }
+                        merge(keys, labels, auxKeys, auxLabels, left, mid, right);
+                        current++;
+                        description = "Merge Complete (Range: " + left + " to " + right + ")";
+                        break;
+                    }
+                    case "p":
+                        current++;
+                        description = "pi=" + event[1];
+                        break;
+                    default:
+                        if (!event[0].startsWith("#")) {
+                            throw new IOException("Unknown event: " + line);
+                        }
+                }
+            }
+
+            if (step < 0) {
+                System.out.println("Rows: " + n);
+                System.out.println("Steps: " + firstStep + " to " + current);
+                return;
+            }
+            if (current != step) {
+                System.out.println("The trace ends at step " + current);
+                return;
+            }
+
+            String name = traceFile.getName();
+            if (name.endsWith(".log")) name = name.substring(0, name.length() - ".log".length());
+            new File("../outputs").mkdirs();
+            File outputFile = new File("../outputs", name + "_step_" + step + ".txt");
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
+                writer.write("Step " + step + ": " + description + "\n");
+                writer.write("Array: [");
+                for (int i = 0; i < n; i++) {
+                    if (i > 0) writer.write(", ");
+                    writer.write(keys[i] + "/" + labels[i]);
+                }
+                writer.write("]\n");
+            }
+            System.out.println("Step " + step + " saved to: " + outputFile.getPath());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error replaying trace: " + e.getMessage());
+        }
+    }
+
+    // Stable merge of the sorted ranges [left, mid] and [mid + 1, right], as merge_sort_step does it
+    private static void merge(int[] keys, String[] labels, int[] auxKeys, String[] auxLabels,
+                              int left, int mid, int right) {
+        System.arraycopy(keys, left, auxKeys, left, right - left + 1);
+        System.arraycopy(labels, left, auxLabels, left, right - left + 1);
+        int i = left, j = mid + 1, k = left;
+        while (i <= mid && j <= right) {
+            if (auxKeys[i] <= auxKeys[j]) {
+                keys[k] = auxKeys[i];
+                labels[k++] = auxLabels[i++];
+            } else {
+                keys[k] = auxKeys[j];
+                labels[k++] = auxLabels[j++];
+            }
+        }
+        while (i <= mid) {
+            keys[k] = auxKeys[i];
+            labels[k++] = auxLabels[i++];
+        }
+        while (j <= right) {
+            keys[k] = auxKeys[j];
+            labels[k++] = auxLabels[j++];
+        }
+    }
+}